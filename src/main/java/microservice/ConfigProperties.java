@@ -16,6 +16,9 @@
 
 package microservice;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
@@ -34,6 +37,56 @@ public class ConfigProperties {
 	@Value("${microservice.records-quantity:100}")	
 	private int testRecordsQuantity;
 
+	private int exportFetchSize = 1000;
+
+	private int importChunkSize = 1000;
+
+	private int reindexThreads = 4;
+
+	private int reindexBatchSize = 100;
+
+	private int reindexFetchSize = 1000;
+
+	private String indexBase = "./data/index";
+
+	private int indexingQueueCapacity = 10000;
+
+	private int indexingBatchSize = 500;
+
+	private long indexingBatchDelayMillis = 50;
+
+	private long indexingOfferTimeoutMillis = 1000;
+
+	private int namesInListMaxSize = 500;
+
+	private int namesStagingThreshold = 5000;
+
+	private boolean hibernateStatistics = true;
+
+	private int jpaExecutorThreads = 10;
+
+	private int jpaExecutorQueueCapacity = 100;
+
+	private long asyncTimeoutMillis = 10000;
+
+	private Map<String, Long> asyncTimeoutsMillis = new HashMap<>();
+
+	private boolean virtualThreads;
+
+	private String tracePinnedThreads = "short";
+
+	private int concurrencyLimitCheap = 50;
+
+	private int concurrencyLimitExpensive = 10;
+
+	private int concurrencyLimitStreaming = 2;
+
+	private int concurrencyLimitMin = 1;
+
+	private int concurrencyLimitMax = 500;
+
+	private long retryAfterSeconds = 1;
+
 	public boolean isAddTestData() {
 		return addTestData;
 	}
@@ -49,4 +102,242 @@ public class ConfigProperties {
 	public void setTestRecordsQuantity(int recordsQuantity) {
 		this.testRecordsQuantity = recordsQuantity;
 	}
+
+	public int getExportFetchSize() {
+		return exportFetchSize;
+	}
+
+	public void setExportFetchSize(int exportFetchSize) {
+		this.exportFetchSize = exportFetchSize;
+	}
+
+	public int getImportChunkSize() {
+		return importChunkSize;
+	}
+
+	public void setImportChunkSize(int importChunkSize) {
+		this.importChunkSize = importChunkSize;
+	}
+
+	public int getReindexThreads() {
+		return reindexThreads;
+	}
+
+	public void setReindexThreads(int reindexThreads) {
+		this.reindexThreads = reindexThreads;
+	}
+
+	public int getReindexBatchSize() {
+		return reindexBatchSize;
+	}
+
+	public void setReindexBatchSize(int reindexBatchSize) {
+		this.reindexBatchSize = reindexBatchSize;
+	}
+
+	public int getReindexFetchSize() {
+		return reindexFetchSize;
+	}
+
+	public void setReindexFetchSize(int reindexFetchSize) {
+		this.reindexFetchSize = reindexFetchSize;
+	}
+
+	public String getIndexBase() {
+		return indexBase;
+	}
+
+	public void setIndexBase(String indexBase) {
+		this.indexBase = indexBase;
+	}
+
+	public int getIndexingQueueCapacity() {
+		return indexingQueueCapacity;
+	}
+
+	public void setIndexingQueueCapacity(int indexingQueueCapacity) {
+		this.indexingQueueCapacity = indexingQueueCapacity;
+	}
+
+	public int getIndexingBatchSize() {
+		return indexingBatchSize;
+	}
+
+	public void setIndexingBatchSize(int indexingBatchSize) {
+		this.indexingBatchSize = indexingBatchSize;
+	}
+
+	public long getIndexingBatchDelayMillis() {
+		return indexingBatchDelayMillis;
+	}
+
+	public void setIndexingBatchDelayMillis(long indexingBatchDelayMillis) {
+		this.indexingBatchDelayMillis = indexingBatchDelayMillis;
+	}
+
+	public long getIndexingOfferTimeoutMillis() {
+		return indexingOfferTimeoutMillis;
+	}
+
+	public void setIndexingOfferTimeoutMillis(long indexingOfferTimeoutMillis) {
+		this.indexingOfferTimeoutMillis = indexingOfferTimeoutMillis;
+	}
+
+	/**
+	 * @return Most names filtered by with a single {@code IN} list; larger sets are split in chunks of this size
+	 */
+	public int getNamesInListMaxSize() {
+		return namesInListMaxSize;
+	}
+
+	public void setNamesInListMaxSize(int namesInListMaxSize) {
+		this.namesInListMaxSize = namesInListMaxSize;
+	}
+
+	/**
+	 * @return Most names filtered by fanning out chunked queries; larger sets are staged in a table
+	 */
+	public int getNamesStagingThreshold() {
+		return namesStagingThreshold;
+	}
+
+	public void setNamesStagingThreshold(int namesStagingThreshold) {
+		this.namesStagingThreshold = namesStagingThreshold;
+	}
+
+	/**
+	 * @return Whether Hibernate gathers the statistics reported by {@code /stats/cache} and {@code /stats/queries}
+	 */
+	public boolean isHibernateStatistics() {
+		return hibernateStatistics;
+	}
+
+	public void setHibernateStatistics(boolean hibernateStatistics) {
+		this.hibernateStatistics = hibernateStatistics;
+	}
+
+	/**
+	 * @return Threads running the blocking JPA work of web requests; no more than the connections of the pool
+	 */
+	public int getJpaExecutorThreads() {
+		return jpaExecutorThreads;
+	}
+
+	public void setJpaExecutorThreads(int jpaExecutorThreads) {
+		this.jpaExecutorThreads = jpaExecutorThreads;
+	}
+
+	public int getJpaExecutorQueueCapacity() {
+		return jpaExecutorQueueCapacity;
+	}
+
+	public void setJpaExecutorQueueCapacity(int jpaExecutorQueueCapacity) {
+		this.jpaExecutorQueueCapacity = jpaExecutorQueueCapacity;
+	}
+
+	public long getAsyncTimeoutMillis() {
+		return asyncTimeoutMillis;
+	}
+
+	public void setAsyncTimeoutMillis(long asyncTimeoutMillis) {
+		this.asyncTimeoutMillis = asyncTimeoutMillis;
+	}
+
+	/**
+	 * @return Timeout of the asynchronous requests of the given endpoint, or the default one if it has none
+	 */
+	public long getAsyncTimeoutMillis(String endpoint) {
+		return asyncTimeoutsMillis.getOrDefault(endpoint, asyncTimeoutMillis);
+	}
+
+	public Map<String, Long> getAsyncTimeoutsMillis() {
+		return asyncTimeoutsMillis;
+	}
+
+	public void setAsyncTimeoutsMillis(Map<String, Long> asyncTimeoutsMillis) {
+		this.asyncTimeoutsMillis = asyncTimeoutsMillis;
+	}
+
+	/**
+	 * @return Whether requests and their JPA work run on virtual threads (JDK 21 or later)
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * @return Value of {@code jdk.tracePinnedThreads} with virtual threads ({@code short} or {@code full}), unless set
+	 * on the command line; empty for no tracing
+	 */
+	public String getTracePinnedThreads() {
+		return tracePinnedThreads;
+	}
+
+	public void setTracePinnedThreads(String tracePinnedThreads) {
+		this.tracePinnedThreads = tracePinnedThreads;
+	}
+
+	/**
+	 * @return Initial concurrency limit of cheap requests (all but the expensive and streaming ones); it adapts to the
+	 * latency
+	 */
+	public int getConcurrencyLimitCheap() {
+		return concurrencyLimitCheap;
+	}
+
+	public void setConcurrencyLimitCheap(int concurrencyLimitCheap) {
+		this.concurrencyLimitCheap = concurrencyLimitCheap;
+	}
+
+	/**
+	 * @return Initial concurrency limit of expensive requests (reads of pages and searches, imports); it adapts to the
+	 * latency
+	 */
+	public int getConcurrencyLimitExpensive() {
+		return concurrencyLimitExpensive;
+	}
+
+	public void setConcurrencyLimitExpensive(int concurrencyLimitExpensive) {
+		this.concurrencyLimitExpensive = concurrencyLimitExpensive;
+	}
+
+	/**
+	 * @return Concurrency limit of streaming requests (exports); it is fixed, as they last as long as what they stream
+	 * is large
+	 */
+	public int getConcurrencyLimitStreaming() {
+		return concurrencyLimitStreaming;
+	}
+
+	public void setConcurrencyLimitStreaming(int concurrencyLimitStreaming) {
+		this.concurrencyLimitStreaming = concurrencyLimitStreaming;
+	}
+
+	public int getConcurrencyLimitMin() {
+		return concurrencyLimitMin;
+	}
+
+	public void setConcurrencyLimitMin(int concurrencyLimitMin) {
+		this.concurrencyLimitMin = concurrencyLimitMin;
+	}
+
+	public int getConcurrencyLimitMax() {
+		return concurrencyLimitMax;
+	}
+
+	public void setConcurrencyLimitMax(int concurrencyLimitMax) {
+		this.concurrencyLimitMax = concurrencyLimitMax;
+	}
+
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+	public void setRetryAfterSeconds(long retryAfterSeconds) {
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
 }
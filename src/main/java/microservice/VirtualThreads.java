@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads of JDK 21 and later, reached reflectively since the code is compiled for Java 8.
+ */
+public final class VirtualThreads {
+
+	/** System property making the JDK print the stack of virtual threads pinned to their carrier while blocking */
+	public static final String TRACE_PINNED_THREADS = "jdk.tracePinnedThreads";
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * @return Whether the running JDK supports virtual threads
+	 */
+	public static boolean isSupported() {
+		try {
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @throws IllegalStateException If the running JDK does not support virtual threads
+	 */
+	public static void checkSupported() {
+		if (!isSupported())
+			throw new IllegalStateException("Virtual threads require JDK 21 or later; running on " + System.getProperty("java.version"));
+	}
+
+	/**
+	 * @return Executor starting a new virtual thread per task
+	 */
+	public static ExecutorService newThreadPerTaskExecutor() {
+		checkSupported();
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw toIllegalState(e);
+		}
+	}
+
+	/**
+	 * @param prefix Prefix of the names of the threads, followed by a counter
+	 * @return Factory of virtual threads
+	 */
+	public static ThreadFactory newThreadFactory(String prefix) {
+		checkSupported();
+		try {
+			// Through the public interface: the builder returned is of a JDK internal class
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			throw toIllegalState(e);
+		}
+	}
+
+	/**
+	 * Enables the tracing of pinned virtual threads; to take effect, it must be called before any virtual thread is
+	 * started.
+	 *
+	 * @param mode {@code short} or {@code full}; null or empty to leave the JDK default (none)
+	 */
+	public static void tracePinnedThreads(String mode) {
+		if (mode != null && !mode.isEmpty() && System.getProperty(TRACE_PINNED_THREADS) == null)
+			System.setProperty(TRACE_PINNED_THREADS, mode);
+	}
+
+	//============
+	// Utilities
+	//============
+	private static IllegalStateException toIllegalState(ReflectiveOperationException e) {
+		Throwable cause = (e instanceof InvocationTargetException) ? e.getCause() : e;
+		return new IllegalStateException("Could not create virtual threads: " + cause, cause);
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice;
+
+import java.util.concurrent.ExecutorService;
+
+import org.apache.coyote.AbstractProtocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Runs every request on a virtual thread of its own instead of on the Tomcat pool, when
+ * {@code microservice.virtual-threads} is enabled; the JPA work of {@code JpaBulkhead} then runs on virtual threads
+ * too. Requires JDK 21 or later at runtime: startup fails otherwise. On such JDKs, Spring 4 needs
+ * {@code --add-opens java.base/java.lang=ALL-UNNAMED --add-opens java.base/java.lang.invoke=ALL-UNNAMED}.
+ * <p>
+ * Up to JDK 23, virtual threads blocking inside {@code synchronized} sections (as in H2 and the connection pool) stay
+ * pinned to their carrier; {@code microservice.trace-pinned-threads} makes the JDK print their stacks when that
+ * happens. Later JDKs no longer pin them, and report other pinning as {@code jdk.VirtualThreadPinned} JFR events.
+ */
+@Configuration
+@ConditionalOnProperty("microservice.virtual-threads")
+public class VirtualThreadsConfiguration {
+
+	private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadsConfiguration.class);
+
+	@Bean
+	public EmbeddedServletContainerCustomizer virtualThreadsCustomizer(ConfigProperties config) {
+		VirtualThreads.checkSupported();
+		VirtualThreads.tracePinnedThreads(config.getTracePinnedThreads());
+		return container -> {
+			if (!(container instanceof TomcatEmbeddedServletContainerFactory))
+				return;
+			((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(connector -> {
+				ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor();
+				((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(executor);
+				LOG.info("Requests on port {} run on virtual threads", connector.getPort());
+			});
+		};
+	}
+}
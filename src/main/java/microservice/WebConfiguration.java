@@ -16,17 +16,48 @@
 
 package microservice;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.h2.server.web.WebServlet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import microservice.metrics.LatencyMetrics;
+import microservice.web.AdaptiveConcurrencyLimit;
+import microservice.web.ConcurrencyLimitFilter;
+import microservice.web.LatencyInterceptor;
+import microservice.web.ThingController;
+import microservice.web.resource.HalSmileHttpMessageConverter;
+import microservice.web.resource.ThingPageHttpMessageConverter;
+import microservice.web.resource.ThingResource;
 
 @Configuration
-public class WebConfiguration {
+public class WebConfiguration extends WebMvcConfigurerAdapter {
+
+	@Autowired
+	private LatencyMetrics latencyMetrics;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new LatencyInterceptor(latencyMetrics, ThingController.class));
+	}
 
 	@Bean
 	public FilterRegistrationBean corsFilter() {
@@ -42,6 +73,53 @@ public class WebConfiguration {
 		return bean;
 	}
 
+	/**
+	 * Reads and writes resources as Smile; picked up by Spring Boot ahead of the default converters. It uses the HAL
+	 * object mapper of Spring Data REST, like the HAL+JSON converter, so both encodings carry the same structure.
+	 */
+	@Bean
+	public HalSmileHttpMessageConverter halSmileConverter(@Qualifier("halObjectMapper") ObjectMapper halObjectMapper) {
+		return new HalSmileHttpMessageConverter(halObjectMapper);
+	}
+
+	/**
+	 * Streams thing collections with the same HAL object mapper, as JSON or Smile; ahead of the Smile converter,
+	 * which would otherwise serialize them as plain beans.
+	 */
+	@Bean
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	public ThingPageHttpMessageConverter thingPageConverter(
+			@Qualifier("halObjectMapper") ObjectMapper halObjectMapper, HalSmileHttpMessageConverter halSmileConverter) {
+		return new ThingPageHttpMessageConverter(halObjectMapper, halSmileConverter.getSmileFactory());
+	}
+
+	@Bean
+	public ConcurrencyLimitFilter concurrencyLimitFilter(ConfigProperties config) {
+		String things = "/" + ThingResource.REL_COL;
+		Set<String> expensiveRequests = new HashSet<>(Arrays.asList(
+				ConcurrencyLimitFilter.key(HttpMethod.GET, things),
+				ConcurrencyLimitFilter.key(HttpMethod.GET, things + "/" + ThingController.REL_SEARCH),
+				ConcurrencyLimitFilter.key(HttpMethod.POST, things + "/" + ThingController.PATH_IMPORT)));
+		Set<String> streamingRequests = Collections.singleton(
+				ConcurrencyLimitFilter.key(HttpMethod.GET, things + "/" + ThingController.PATH_EXPORT));
+		return new ConcurrencyLimitFilter(
+				new AdaptiveConcurrencyLimit("cheap", config.getConcurrencyLimitCheap(), config.getConcurrencyLimitMin(), config.getConcurrencyLimitMax()),
+				new AdaptiveConcurrencyLimit("expensive", config.getConcurrencyLimitExpensive(), config.getConcurrencyLimitMin(), config.getConcurrencyLimitMax()),
+				AdaptiveConcurrencyLimit.fixed("streaming", config.getConcurrencyLimitStreaming()),
+				expensiveRequests, streamingRequests, config.getRetryAfterSeconds());
+	}
+
+	/**
+	 * Sheds load on things right after CORS, before any other work is done for the request.
+	 */
+	@Bean
+	public FilterRegistrationBean concurrencyLimitFilterRegistration(ConcurrencyLimitFilter concurrencyLimitFilter) {
+		FilterRegistrationBean bean = new FilterRegistrationBean(concurrencyLimitFilter);
+		bean.addUrlPatterns("/" + ThingResource.REL_COL, "/" + ThingResource.REL_COL + "/*");
+		bean.setOrder(1);
+		return bean;
+	}
+
 	@Bean
     public ServletRegistrationBean h2servletRegistration(){
         ServletRegistrationBean registrationBean = new ServletRegistrationBean(new WebServlet());
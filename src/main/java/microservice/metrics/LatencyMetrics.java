@@ -0,0 +1,151 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.metrics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Latency distributions of requests and method invocations, exposed in the Prometheus text format as summaries.
+ * Recording is wait-free (an HdrHistogram {@link Recorder} plus counters), so it costs next to nothing on the hot
+ * path; histograms are only swapped and read when scraped.
+ * <p>
+ * Counts and sums are cumulative, so Prometheus derives rates from them; quantiles cover the calls of the last
+ * minute or so, in a window of slices rotated as time passes, so scrapes (however many scrapers) never reset them.
+ * Calls are drained from the recorder into the slice current when scraped.
+ */
+@Component
+public class LatencyMetrics {
+
+	public static final String REQUESTS = "http_server_requests_seconds";
+	public static final String INVOCATIONS = "method_invocation_seconds";
+
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	/** Latencies are recorded in microseconds, with 1% precision, up to an hour */
+	private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+	private static final int SIGNIFICANT_DIGITS = 2;
+
+	/** Quantiles cover the calls of the last {@code WINDOW_SLICES} slices of {@code SLICE_MILLIS} */
+	static final long SLICE_MILLIS = TimeUnit.SECONDS.toMillis(10);
+	static final int WINDOW_SLICES = 6;
+
+	private static final Map<String, String> HELP;
+	static {
+		HELP = new ConcurrentHashMap<>();
+		HELP.put(REQUESTS, "Latency of the requests, by handler");
+		HELP.put(INVOCATIONS, "Latency of the invocations of repository and service methods, by method");
+	}
+
+	/** Timers by metric, and by label value within each */
+	private final ConcurrentMap<String, ConcurrentMap<String, Timer>> timers = new ConcurrentHashMap<>();
+
+	/**
+	 * @param metric Name of the metric, e.g. {@link #REQUESTS}
+	 * @param label Label distinguishing the timer within the metric, as {@code name=value}
+	 * @return Timer, created on first use
+	 */
+	public Timer timer(String metric, String label) {
+		return timers.computeIfAbsent(metric, name -> new ConcurrentHashMap<>()).computeIfAbsent(label, Timer::new);
+	}
+
+	/**
+	 * Appends all the metrics to the builder, in the Prometheus text exposition format (version 0.0.4).
+	 */
+	public void writePrometheus(StringBuilder out) {
+		timers.forEach((metric, timersByLabel) -> {
+			out.append("# HELP ").append(metric).append(' ').append(HELP.getOrDefault(metric, metric)).append('\n');
+			out.append("# TYPE ").append(metric).append(" summary\n");
+			timersByLabel.values().forEach(timer -> timer.writePrometheus(metric, out));
+		});
+	}
+
+	/**
+	 * Latency distribution of one handler or method.
+	 */
+	public static class Timer {
+
+		private final String label;
+		private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sumNanos = new LongAdder();
+		private final Histogram[] slices = new Histogram[WINDOW_SLICES];
+		/** Index since the epoch of the slice each histogram holds */
+		private final long[] sliceIndexes = new long[WINDOW_SLICES];
+		private final Histogram window = new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+		private Histogram interval;
+
+		Timer(String label) {
+			this.label = label;
+			for (int i = 0; i < WINDOW_SLICES; i++)
+				slices[i] = new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+			Arrays.fill(sliceIndexes, Long.MIN_VALUE);
+		}
+
+		public void record(long nanos) {
+			recorder.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos)));
+			count.increment();
+			sumNanos.add(nanos);
+		}
+
+		private synchronized void writePrometheus(String metric, StringBuilder out) {
+			Histogram window = getWindowHistogram(System.currentTimeMillis());
+			String[] labelParts = label.split("=", 2);
+			String labels = labelParts[0] + "=\"" + escape(labelParts[1]) + "\"";
+			for (double quantile : QUANTILES) {
+				out.append(metric).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ");
+				out.append(window.getTotalCount() == 0 ? "NaN" : String.valueOf(window.getValueAtPercentile(quantile * 100) / 1e6)).append('\n');
+			}
+			out.append(metric).append("_sum{").append(labels).append("} ").append(sumNanos.sum() / 1e9).append('\n');
+			out.append(metric).append("_count{").append(labels).append("} ").append(count.sum()).append('\n');
+		}
+
+		/**
+		 * Drains the calls recorded since the previous scrape into the current slice, recycling slices gone out of the
+		 * window, and merges the slices still in it.
+		 */
+		synchronized Histogram getWindowHistogram(long nowMillis) {
+			interval = recorder.getIntervalHistogram(interval);
+			long sliceIndex = nowMillis / SLICE_MILLIS;
+			int current = (int) (sliceIndex % WINDOW_SLICES);
+			if (sliceIndexes[current] != sliceIndex) {
+				slices[current].reset();
+				sliceIndexes[current] = sliceIndex;
+			}
+			slices[current].add(interval);
+
+			window.reset();
+			for (int i = 0; i < WINDOW_SLICES; i++) {
+				if (sliceIndexes[i] > sliceIndex - WINDOW_SLICES)
+					window.add(slices[i]);
+			}
+			return window;
+		}
+
+		private static String escape(String value) {
+			return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.metrics;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import microservice.repository.ThingRepository;
+import microservice.service.AppService;
+
+/**
+ * Times every method of {@link ThingRepository} and {@link AppService}. The timing advice is added first to the
+ * proxies these beans already are (repository, transactions), so it includes the time of the transaction; beans which
+ * are not proxied yet are wrapped in a proxy of their own. Runs last, so that it finds the proxies of the other
+ * post processors.
+ */
+@Component
+public class MethodLatencyPostProcessor implements BeanPostProcessor, Ordered {
+
+	@Autowired
+	private LatencyMetrics metrics;
+
+	@Override
+	public int getOrder() {
+		return Ordered.LOWEST_PRECEDENCE;
+	}
+
+	@Override
+	public Object postProcessBeforeInitialization(Object bean, String beanName) {
+		return bean;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		String component = (bean instanceof ThingRepository) ? ThingRepository.class.getSimpleName()
+				: (bean instanceof AppService) ? AppService.class.getSimpleName() : null;
+		if (component == null)
+			return bean;
+
+		TimingInterceptor interceptor = new TimingInterceptor(component);
+		if (bean instanceof Advised && !((Advised) bean).isFrozen()) {
+			((Advised) bean).addAdvice(0, interceptor);
+			return bean;
+		}
+		ProxyFactory proxyFactory = new ProxyFactory(bean);
+		proxyFactory.addAdvice(interceptor);
+		return proxyFactory.getProxy(bean.getClass().getClassLoader());
+	}
+
+	/**
+	 * Records the latency of each invocation in the timer of its method, resolved once per method.
+	 */
+	class TimingInterceptor implements MethodInterceptor {
+
+		private final String component;
+		private final ConcurrentMap<Method, LatencyMetrics.Timer> timers = new ConcurrentHashMap<>();
+
+		TimingInterceptor(String component) {
+			this.component = component;
+		}
+
+		@Override
+		public Object invoke(MethodInvocation invocation) throws Throwable {
+			LatencyMetrics.Timer timer = timers.computeIfAbsent(invocation.getMethod(),
+					method -> metrics.timer(LatencyMetrics.INVOCATIONS, "method=" + component + "." + method.getName()));
+			long startedOn = System.nanoTime();
+			try {
+				return invocation.proceed();
+			} finally {
+				timer.record(System.nanoTime() - startedOn);
+			}
+		}
+	}
+}
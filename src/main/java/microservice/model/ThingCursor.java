@@ -0,0 +1,174 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Objects;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+
+/**
+ * Position within the things sorted by a single property (and by id as tie breaker). It is used to seek the rows
+ * following the last one seen, instead of skipping an offset; hence every page costs the same. Its textual form is
+ * opaque to clients.
+ */
+public class ThingCursor {
+
+	private static final String SEPARATOR = "|";
+
+	/**
+	 * Cursor positioned before the first row of the collection sorted as requested. Only the first order of the sort
+	 * is honored (the controller rejects sorts of several orders); things are sorted by id when none is specified.
+	 *
+	 * @param sort Requested sort. Can be null.
+	 * @return Cursor positioned at the beginning of the collection
+	 * @throws IllegalArgumentException If the sort property is not supported
+	 */
+	public static ThingCursor first(Sort sort) {
+		Iterator<Sort.Order> orders = (sort == null) ? null : sort.iterator();
+		if (orders == null || !orders.hasNext())
+			return new ThingCursor(ThingField.ID.getProperty(), true, null, null);
+		Sort.Order order = orders.next();
+		return new ThingCursor(validateProperty(order.getProperty()), order.isAscending(), null, null);
+	}
+
+	/**
+	 * Parses the textual form of a cursor, as generated by {@link #encode()}.
+	 *
+	 * @param token Textual form of the cursor
+	 * @return Decoded cursor
+	 * @throws IllegalArgumentException If the token is malformed
+	 */
+	public static ThingCursor decode(String token) {
+		String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\" + SEPARATOR, 4);
+		if (parts.length != 4)
+			throw new IllegalArgumentException("Malformed cursor: " + token);
+
+		String property = validateProperty(parts[0]);
+		Long lastId = Long.valueOf(parts[2]);
+		try {
+			return new ThingCursor(property, Direction.fromString(parts[1]).isAscending(), parseValue(property, parts[3]), lastId);
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Malformed cursor: " + token, e);
+		}
+	}
+
+	/**
+	 * Things can be sorted by any of their fields (which, unlike the JPA metamodel, are available before JPA starts).
+	 */
+	private static String validateProperty(String property) {
+		if (ThingField.forProperty(property) == null)
+			throw new IllegalArgumentException("Cursors can not sort by property: " + property);
+		return property;
+	}
+
+	private static Object parseValue(String property, String value) {
+		if (property.equals(ThingField.ID.getProperty())) return Long.valueOf(value);
+		if (property.equals(ThingField.CREATED_ON.getProperty())) return Instant.parse(value);
+		return value;
+	}
+
+	private final String property;
+	private final boolean ascending;
+	private final Object lastValue;
+	private final Long lastId;
+
+	private ThingCursor(String property, boolean ascending, Object lastValue, Long lastId) {
+		this.property = property;
+		this.ascending = ascending;
+		this.lastValue = lastValue;
+		this.lastId = lastId;
+	}
+
+	/**
+	 * @param last Last thing seen
+	 * @return Cursor, sorted in the same way as this one, positioned right after the thing passed as parameter
+	 * @throws IllegalArgumentException If the thing has no value for the sort property: the seek predicate can not
+	 * compare with null, and its textual form would be read back as the string {@code "null"}
+	 */
+	public ThingCursor next(ThingRow last) {
+		Object value = last.getValue(property);
+		if (value == null)
+			throw new IllegalArgumentException("Cursors can not be positioned after a null " + property);
+		return new ThingCursor(property, ascending, value, last.getId());
+	}
+
+	/**
+	 * @return Textual form of the cursor
+	 * @throws IllegalStateException If the cursor is positioned at the beginning, which has no textual form: it is
+	 * requested with an empty cursor instead
+	 */
+	public String encode() {
+		if (isFirst())
+			throw new IllegalStateException("Cursors at the beginning have no textual form");
+		String value = String.join(SEPARATOR,
+				property, (ascending ? Direction.ASC : Direction.DESC).name(), String.valueOf(lastId), String.valueOf(lastValue));
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public boolean isFirst() {
+		return lastId == null;
+	}
+
+	public boolean isSortedById() {
+		return property.equals(ThingField.ID.getProperty());
+	}
+
+	public Sort getSort() {
+		return new Sort(ascending ? Direction.ASC : Direction.DESC, property);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof ThingCursor)) return false;
+		ThingCursor other = (ThingCursor) obj;
+		return property.equals(other.property)
+				&& ascending == other.ascending
+				&& Objects.equals(lastValue, other.lastValue)
+				&& Objects.equals(lastId, other.lastId);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(property, ascending, lastValue, lastId);
+	}
+
+	//================================
+	// GENERATED GETTERS
+	//================================
+	public String getProperty() {
+		return property;
+	}
+
+	public boolean isAscending() {
+		return ascending;
+	}
+
+	public Object getLastValue() {
+		return lastValue;
+	}
+
+	public Long getLastId() {
+		return lastId;
+	}
+}
@@ -17,31 +17,94 @@
 package microservice.model;
 
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
-
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.search.annotations.Analyze;
+import org.hibernate.search.annotations.Facet;
+import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Fields;
+import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.annotations.Store;
+
+/**
+ * Thing, cached in the second level cache both by id and by name (its natural id). Cache regions are bounded in
+ * size and time to live by {@code ehcache.xml}. It is also indexed for full text search, with all the fields needed to
+ * build a {@link ThingRow} stored in the index and with facets on its creator and creation day and month.
+ * <p>
+ * Its indexes end with the sort key used by queries ({@code createdOn, id}), so filtering by creator and/or creation
+ * range and sorting by creation are served in index order, without sorting.
+ */
 @Entity
-@Table(name="THING")
+@Table(name="THING", indexes = {
+		@Index(name = "IDX_THING_CREATED_BY_ON", columnList = "createdBy, createdOn, id"),
+		@Index(name = "IDX_THING_CREATED_ON", columnList = "createdOn, id")
+})
+@Indexed
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 public class ThingEntity {
 
+	public static final String ID_GENERATOR = "thingIdGenerator";
+
+	public static final String FIELD_CREATED_BY_FACET = "createdByFacet";
+	public static final String FIELD_CREATED_DAY = "createdDay";
+	public static final String FIELD_CREATED_MONTH = "createdMonth";
+
+	private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneOffset.UTC);
+	private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM").withZone(ZoneOffset.UTC);
+
+	/**
+	 * Ids are allocated in blocks by a pooled optimizer, so bulk inserts neither hit the sequence per row nor break
+	 * JDBC batching. The allocation size should match {@code hibernate.jdbc.batch_size}.
+	 */
 	@Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_GENERATOR)
+    @SequenceGenerator(name = ID_GENERATOR, sequenceName = "THING_SEQ", allocationSize = 50)
     private long id;
 
+    @NaturalId(mutable = true)
+    @Field(store = Store.YES)
     @Column(nullable = false, updatable = true, unique = true)
     private String name;
 
+    @Field(analyze = Analyze.NO, store = Store.YES)
     @Column(nullable = false, updatable = false)
     private Instant createdOn;
 
+    @Fields({
+    	@Field(store = Store.YES),
+    	@Field(name = FIELD_CREATED_BY_FACET, analyze = Analyze.NO)
+    })
+    @Facet(forField = FIELD_CREATED_BY_FACET)
     @Column(nullable = false, updatable = false)
     private String createdBy;
 
+    @Column(nullable = false)
+    private Instant modifiedOn;
+
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     public ThingEntity() {}
 
 	public ThingEntity(String name, String user) {
@@ -54,6 +117,30 @@ public class ThingEntity {
 		setCreatedOn(Instant.now());
 	}
 
+	@PrePersist
+	@PreUpdate
+	void touch() {
+		setModifiedOn((modifiedOn == null) ? createdOn : Instant.now());
+	}
+
+	/**
+	 * @return Day (UTC) the thing was created on, as {@code yyyy-MM-dd}. Only indexed, for faceting
+	 */
+	@Field(name = FIELD_CREATED_DAY, analyze = Analyze.NO)
+	@Facet(forField = FIELD_CREATED_DAY)
+	public String getCreatedDay() {
+		return (createdOn == null) ? null : DAY_FORMAT.format(createdOn);
+	}
+
+	/**
+	 * @return Month (UTC) the thing was created on, as {@code yyyy-MM}. Only indexed, for faceting
+	 */
+	@Field(name = FIELD_CREATED_MONTH, analyze = Analyze.NO)
+	@Facet(forField = FIELD_CREATED_MONTH)
+	public String getCreatedMonth() {
+		return (createdOn == null) ? null : MONTH_FORMAT.format(createdOn);
+	}
+
 
 	//================================
     // GENERATED GETTERS AND SETTERS
@@ -89,4 +176,20 @@ public class ThingEntity {
 	public void setCreatedBy(String createdBy) {
 		this.createdBy = createdBy;
 	}
+
+	public Instant getModifiedOn() {
+		return modifiedOn;
+	}
+
+	public void setModifiedOn(Instant modifiedOn) {
+		this.modifiedOn = modifiedOn;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.model;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Properties of things which can be selected, in the order they are read and written.
+ */
+public enum ThingField {
+
+	ID("id"), NAME("name"), CREATED_ON("createdOn"), CREATED_BY("createdBy");
+
+	public static final Set<ThingField> ALL = Collections.unmodifiableSet(EnumSet.allOf(ThingField.class));
+
+	/**
+	 * @param fields Comma separated property names, e.g. {@code id,name}. Null or blank for all of them.
+	 * @return Fields named
+	 * @throws IllegalArgumentException If any of the names is not the one of a field
+	 */
+	public static Set<ThingField> parse(String fields) {
+		if (fields == null || fields.trim().isEmpty())
+			return ALL;
+
+		Set<ThingField> result = EnumSet.noneOf(ThingField.class);
+		for (String property : fields.split(",")) {
+			ThingField field = forProperty(property.trim());
+			if (field == null)
+				throw new IllegalArgumentException("Unknown field: " + property.trim());
+			result.add(field);
+		}
+		return result;
+	}
+
+	/**
+	 * @return Field of the given property, or null if it is not one of them
+	 */
+	public static ThingField forProperty(String property) {
+		for (ThingField field : values())
+			if (field.property.equals(property))
+				return field;
+		return null;
+	}
+
+	private final String property;
+
+	private ThingField(String property) {
+		this.property = property;
+	}
+
+	public String getProperty() {
+		return property;
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+/**
+ * Name staged for filtering things by a set of names too large for an {@code IN} list. The names of a filter share
+ * its id, and are joined with things by a subquery; they only live for the duration of the query using them.
+ */
+@Entity
+@Table(name = "THING_NAME_FILTER", indexes = @Index(name = "IDX_THING_NAME_FILTER", columnList = "filterId, name"))
+public class ThingNameFilter {
+
+	public static final String ID_GENERATOR = "thingNameFilterIdGenerator";
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_GENERATOR)
+	@SequenceGenerator(name = ID_GENERATOR, sequenceName = "THING_NAME_FILTER_SEQ", allocationSize = 50)
+	private long id;
+
+	@Column(nullable = false, updatable = false, length = 36)
+	private String filterId;
+
+	@Column(nullable = false, updatable = false)
+	private String name;
+
+	public ThingNameFilter() {}
+
+	public ThingNameFilter(String filterId, String name) {
+		this.filterId = filterId;
+		this.name = name;
+	}
+
+	//================================
+	// GENERATED GETTERS
+	//================================
+	public long getId() {
+		return id;
+	}
+
+	public String getFilterId() {
+		return filterId;
+	}
+
+	public String getName() {
+		return name;
+	}
+}
@@ -16,12 +16,40 @@
 
 package microservice.model;
 
-import java.util.HashSet;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.Objects;
 import java.util.Set;
 
+/**
+ * Filters on things; only those set are applied. {@code createdAfter} and {@code createdBefore} delimit a half open
+ * range: things created at {@code createdAfter} are included, those created at {@code createdBefore} are not.
+ */
 public class ThingQueryParameters {
 
-	private Set<String> names = new HashSet<>();
+	private Set<String> names = new LinkedHashSet<>();
+
+	private String createdBy;
+
+	private Instant createdAfter;
+
+	private Instant createdBefore;
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof ThingQueryParameters)) return false;
+		ThingQueryParameters other = (ThingQueryParameters) obj;
+		return Objects.equals(names, other.names)
+				&& Objects.equals(createdBy, other.createdBy)
+				&& Objects.equals(createdAfter, other.createdAfter)
+				&& Objects.equals(createdBefore, other.createdBefore);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(names, createdBy, createdAfter, createdBefore);
+	}
 
     //================================
     // GENERATED GETTERS AND SETTERS
@@ -33,4 +61,28 @@ public class ThingQueryParameters {
 	public void setNames(Set<String> names) {
 		this.names = names;
 	}
+
+	public String getCreatedBy() {
+		return createdBy;
+	}
+
+	public void setCreatedBy(String createdBy) {
+		this.createdBy = createdBy;
+	}
+
+	public Instant getCreatedAfter() {
+		return createdAfter;
+	}
+
+	public void setCreatedAfter(Instant createdAfter) {
+		this.createdAfter = createdAfter;
+	}
+
+	public Instant getCreatedBefore() {
+		return createdBefore;
+	}
+
+	public void setCreatedBefore(Instant createdBefore) {
+		this.createdBefore = createdBefore;
+	}
 }
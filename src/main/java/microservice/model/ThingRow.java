@@ -0,0 +1,111 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.model;
+
+import java.time.Instant;
+import java.util.Comparator;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+
+/**
+ * Read-only view of a thing, projected straight from the columns of a query. Unlike {@link ThingEntity}, it is
+ * neither managed by the persistence context nor snapshotted for dirty checking.
+ */
+public class ThingRow {
+
+	public static ThingRow of(ThingEntity entity) {
+		return new ThingRow(entity.getId(), entity.getName(), entity.getCreatedOn(), entity.getCreatedBy());
+	}
+
+	/**
+	 * Sorts rows in memory as the database does for the same sort: by its orders and then by id, in the direction of
+	 * the last of them, as tie breaker.
+	 *
+	 * @param sort Requested sort. Can be null.
+	 * @throws IllegalArgumentException If sorting by a property rows do not have
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static Comparator<ThingRow> comparator(Sort sort) {
+		Comparator<ThingRow> result = (row1, row2) -> 0;
+		Direction tieBreakerDirection = Direction.ASC;
+		boolean sortedById = false;
+		if (sort != null) {
+			for (Sort.Order order : sort) {
+				String property = order.getProperty();
+				Comparator<ThingRow> byProperty = (row1, row2) -> ((Comparable) row1.getValue(property)).compareTo(row2.getValue(property));
+				result = result.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+				tieBreakerDirection = order.getDirection();
+				sortedById |= property.equals(ThingField.ID.getProperty());
+			}
+		}
+
+		if (!sortedById) {
+			Comparator<ThingRow> byId = Comparator.comparingLong(ThingRow::getId);
+			result = result.thenComparing(tieBreakerDirection.isAscending() ? byId : byId.reversed());
+		}
+		return result;
+	}
+
+	private final long id;
+	private final String name;
+	private final Instant createdOn;
+	private final String createdBy;
+
+	public ThingRow(long id, String name, Instant createdOn, String createdBy) {
+		this.id = id;
+		this.name = name;
+		this.createdOn = createdOn;
+		this.createdBy = createdBy;
+	}
+
+	/**
+	 * @param property Name of one of the properties of things present in rows
+	 * @return Value of the property
+	 * @throws IllegalArgumentException If rows do not have the property
+	 */
+	public Object getValue(String property) {
+		ThingField field = ThingField.forProperty(property);
+		if (field == null)
+			throw new IllegalArgumentException("Things can not be sorted in memory by property: " + property);
+		switch (field) {
+			case ID: return id;
+			case NAME: return name;
+			case CREATED_ON: return createdOn;
+			default: return createdBy;
+		}
+	}
+
+	//================================
+	// GENERATED GETTERS
+	//================================
+	public long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Instant getCreatedOn() {
+		return createdOn;
+	}
+
+	public String getCreatedBy() {
+		return createdBy;
+	}
+}
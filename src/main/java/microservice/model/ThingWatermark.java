@@ -0,0 +1,68 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.model;
+
+import java.time.Instant;
+
+/**
+ * Summary of the state of a set of things, which changes whenever any of them is created, updated or deleted. It
+ * is computed by the database without loading the things themselves.
+ */
+public class ThingWatermark {
+
+	public static ThingWatermark of(ThingEntity entity) {
+		return new ThingWatermark(1L, entity.getVersion(), entity.getModifiedOn());
+	}
+
+	private final long count;
+	private final long versionSum;
+	private final Instant lastModified;
+
+	public ThingWatermark(Long count, Long versionSum, Instant lastModified) {
+		this.count = (count == null) ? 0 : count;
+		this.versionSum = (versionSum == null) ? 0 : versionSum;
+		this.lastModified = lastModified;
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * @return Watermark of the union of the (disjoint) sets of things summarized by this and the other watermark
+	 */
+	public ThingWatermark plus(ThingWatermark other) {
+		Instant lastModified = (this.lastModified == null || (other.lastModified != null && other.lastModified.isAfter(this.lastModified))) ?
+				other.lastModified : this.lastModified;
+		return new ThingWatermark(count + other.count, versionSum + other.versionSum, lastModified);
+	}
+
+	//================================
+	// GENERATED GETTERS
+	//================================
+	public long getCount() {
+		return count;
+	}
+
+	public long getVersionSum() {
+		return versionSum;
+	}
+
+	public Instant getLastModified() {
+		return lastModified;
+	}
+}
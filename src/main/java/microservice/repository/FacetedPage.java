@@ -0,0 +1,53 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.repository;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Page of search hits together with the facet counts of all the hits (not only those in the page).
+ */
+public class FacetedPage<T> extends PageImpl<T> {
+
+	private static final long serialVersionUID = -4153790472158129716L;
+
+	private final Pageable pageable;
+	private final Map<String, Map<String, Integer>> facets;
+
+	/**
+	 * @param facets Counts by value for each facet name, values sorted by descending count
+	 */
+	public FacetedPage(List<T> content, Pageable pageable, long total, Map<String, Map<String, Integer>> facets) {
+		super(content, pageable, total);
+		this.pageable = pageable;
+		this.facets = facets;
+	}
+
+	public Map<String, Map<String, Integer>> getFacets() {
+		return facets;
+	}
+
+	@Override
+	public <S> FacetedPage<S> map(Converter<? super T, ? extends S> converter) {
+		return new FacetedPage<>(getConvertedContent(converter), pageable, getTotalElements(), facets);
+	}
+}
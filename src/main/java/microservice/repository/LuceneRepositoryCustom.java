@@ -9,15 +9,96 @@
 
 package microservice.repository;
 
+import java.io.Serializable;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.springframework.data.domain.Pageable;
 
 /**
  * @author Marco Ruiz
  */
 public interface LuceneRepositoryCustom<ENTITY_T> {
 	
-	void buildTextIndex() throws InterruptedException;
+	/**
+	 * @return Number of entities of the given class in the database (not in the index)
+	 */
+	long countEntities(Class<ENTITY_T> entityClass);
+
+	/**
+	 * @return Number of documents of the given class in the index
+	 */
+	long countIndexed(Class<ENTITY_T> entityClass);
+
+	/**
+	 * Removes all the documents of the given class from the index.
+	 */
+	void purgeAll(Class<ENTITY_T> entityClass);
+
+	/**
+	 * Reads the ids of all the entities of the given class in ascending order through a database cursor, and hands
+	 * them over in batches.
+	 *
+	 * @param fetchSize Rows fetched from the database at a time
+	 * @param batchSize Ids per batch
+	 * @param batchConsumer Receives every batch; returning false stops the scroll
+	 * @return Number of ids read
+	 */
+	long scrollIds(Class<ENTITY_T> entityClass, int fetchSize, int batchSize, Predicate<List<Serializable>> batchConsumer);
+
+	/**
+	 * Same as {@link #scrollIds(Class, int, int, Predicate)}, but only for the entities modified since the given
+	 * instant.
+	 *
+	 * @param timestampProperty Property holding the last modification instant of the entities
+	 * @param modifiedSince Only entities with a timestamp equal or after this are included; if null, all of them are
+	 */
+	long scrollIds(Class<ENTITY_T> entityClass, String timestampProperty, Instant modifiedSince, int fetchSize, int batchSize, Predicate<List<Serializable>> batchConsumer);
+
+	/**
+	 * Reads the ids of the documents of the given class in the index whose entity is no longer in the database, and
+	 * hands them over in batches. The index is read from a snapshot taken at the start, so the batches can be purged
+	 * while scrolling.
+	 *
+	 * @param batchSize Documents checked against the database at a time
+	 * @param batchConsumer Receives every non empty batch of orphan ids; returning false stops the scroll
+	 * @return Number of orphan ids read
+	 */
+	long scrollOrphanIds(Class<ENTITY_T> entityClass, int batchSize, Predicate<List<Serializable>> batchConsumer);
+
+	/**
+	 * Reindexes the entities with the given ids in place, in its own transaction: each document is replaced (or
+	 * purged, if the entity no longer exists) and the changes are flushed to the index before returning. Searches
+	 * keep being served from the index meanwhile.
+	 *
+	 * @return Number of documents reindexed
+	 */
+	int reindex(Class<ENTITY_T> entityClass, List<Serializable> ids);
 	
 	List<ENTITY_T> find(String field, String matchingText, Class<ENTITY_T> entityClass);
-	
-}
\ No newline at end of file
+
+	/**
+	 * Page of the entities matching a simple query string over several fields, sorted by relevance. Only the hits
+	 * of the page are loaded from the database; the total and the facet counts are computed by the index, in the
+	 * same pass.
+	 *
+	 * @param boostedFields Fields to match against, with the boost of each one
+	 * @param matchingText Simple query string to match
+	 * @param entityClass Indexed entity class
+	 * @param pageable Page requested
+	 * @param facets Facets to count, by name, with the facet field each one is counted on
+	 * @return Page of matching entities
+	 */
+	FacetedPage<ENTITY_T> find(Map<String, Float> boostedFields, String matchingText, Class<ENTITY_T> entityClass, Pageable pageable, Map<String, String> facets);
+
+	/**
+	 * Same as {@link #find(Map, String, Class, Pageable, Map)}, but returns the values of the projected fields
+	 * (which must be stored in the index) instead of the entities. The database is not touched at all.
+	 *
+	 * @param projections Names of the stored fields to return (or projection constants, such as the document id)
+	 * @return Page of the projected values of the matching entities, in the order requested
+	 */
+	FacetedPage<Object[]> findProjections(Map<String, Float> boostedFields, String matchingText, Class<ENTITY_T> entityClass, Pageable pageable, Map<String, String> facets, String... projections);
+}
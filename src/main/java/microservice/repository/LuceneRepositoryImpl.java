@@ -16,17 +16,38 @@
 
 package microservice.repository;
 
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
 
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.search.jpa.FullTextEntityManager;
 import org.hibernate.search.jpa.FullTextQuery;
 import org.hibernate.search.jpa.Search;
 import org.hibernate.search.query.dsl.QueryBuilder;
+import org.hibernate.search.query.dsl.SimpleQueryStringMatchingContext;
+import org.hibernate.search.query.engine.spi.FacetManager;
+import org.hibernate.search.query.facet.FacetSortOrder;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -35,6 +56,9 @@ import org.springframework.transaction.annotation.Transactional;
 @Repository
 public class LuceneRepositoryImpl<ENTITY_T> implements LuceneRepositoryCustom<ENTITY_T> {
 
+	/** Values counted per facet, the most frequent first */
+	private static final int MAX_FACET_VALUES = 100;
+
     @PersistenceContext
     private EntityManager em;
 
@@ -42,11 +66,118 @@ public class LuceneRepositoryImpl<ENTITY_T> implements LuceneRepositoryCustom<EN
     // LUCENE SEARCH
     //===============
 
+	@Override
+	@Transactional(readOnly = true)
+	public long countEntities(Class<ENTITY_T> entityClass) {
+		CriteriaBuilder cb = em.getCriteriaBuilder();
+		CriteriaQuery<Long> query = cb.createQuery(Long.class);
+		query.select(cb.count(query.from(entityClass)));
+		return em.createQuery(query).getSingleResult();
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public long countIndexed(Class<ENTITY_T> entityClass) {
+		return getFullTextEntityManager().getSearchFactory().getStatistics().getNumberOfIndexedEntities(entityClass.getName());
+	}
+
 	@Override
 	@Transactional
-    public void buildTextIndex() throws InterruptedException {
-    	getFullTextEntityManager().createIndexer().startAndWait();
-    }
+	public void purgeAll(Class<ENTITY_T> entityClass) {
+		FullTextEntityManager ftem = getFullTextEntityManager();
+		ftem.purgeAll(entityClass);
+		ftem.flushToIndexes();
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public long scrollIds(Class<ENTITY_T> entityClass, int fetchSize, int batchSize, Predicate<List<Serializable>> batchConsumer) {
+		return scrollIds(entityClass, null, null, fetchSize, batchSize, batchConsumer);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public long scrollIds(Class<ENTITY_T> entityClass, String timestampProperty, Instant modifiedSince, int fetchSize, int batchSize, Predicate<List<Serializable>> batchConsumer) {
+		boolean filtered = (modifiedSince != null);
+		String hql = "select e.id from " + entityClass.getName() + " e" +
+				(filtered ? " where e." + timestampProperty + " >= :since" : "") +
+				" order by e.id";
+		org.hibernate.query.Query<?> query = em.unwrap(Session.class).createQuery(hql);
+		if (filtered)
+			query.setParameter("since", modifiedSince);
+		ScrollableResults results = query
+				.setReadOnly(true)
+				.setFetchSize(fetchSize)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		long count = 0;
+		try {
+			List<Serializable> batch = new ArrayList<>(batchSize);
+			while (results.next()) {
+				batch.add((Serializable) results.get(0));
+				count++;
+				if (batch.size() == batchSize) {
+					if (!batchConsumer.test(batch))
+						return count;
+					batch = new ArrayList<>(batchSize);
+				}
+			}
+			if (!batch.isEmpty())
+				batchConsumer.test(batch);
+			return count;
+		} finally {
+			results.close();
+		}
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public long scrollOrphanIds(Class<ENTITY_T> entityClass, int batchSize, Predicate<List<Serializable>> batchConsumer) {
+		String hql = "select e.id from " + entityClass.getName() + " e where e.id in (:ids)";
+		ScrollableResults results = org.hibernate.search.Search.getFullTextSession(em.unwrap(Session.class))
+				.createFullTextQuery(new MatchAllDocsQuery(), entityClass)
+				.setProjection(FullTextQuery.ID)
+				.setFetchSize(batchSize)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		long count = 0;
+		try {
+			Set<Serializable> batch = new LinkedHashSet<>();
+			boolean more = true;
+			while (more) {
+				more = results.next();
+				if (more)
+					batch.add((Serializable) results.get()[0]);
+				if (batch.size() == batchSize || (!more && !batch.isEmpty())) {
+					batch.removeAll(em.createQuery(hql, Object.class).setParameter("ids", batch).getResultList());
+					count += batch.size();
+					if (!batch.isEmpty() && !batchConsumer.test(new ArrayList<>(batch)))
+						return count;
+					batch.clear();
+				}
+			}
+			return count;
+		} finally {
+			results.close();
+		}
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	public int reindex(Class<ENTITY_T> entityClass, List<Serializable> ids) {
+		FullTextEntityManager ftem = getFullTextEntityManager();
+		List<ENTITY_T> entities = em.unwrap(Session.class)
+				.byMultipleIds(entityClass)
+				.with(CacheMode.IGNORE)
+				.multiLoad(ids);
+		for (int i = 0; i < ids.size(); i++) {
+			if (entities.get(i) == null)
+				ftem.purge(entityClass, ids.get(i));
+			else
+				ftem.index(entities.get(i));
+		}
+		ftem.flushToIndexes();
+		ftem.clear();
+		return ids.size();
+	}
 
 	@SuppressWarnings("unchecked")
 	public List<ENTITY_T> find(String field, String matchingText, Class<ENTITY_T> entityClass) {
@@ -58,6 +189,76 @@ public class LuceneRepositoryImpl<ENTITY_T> implements LuceneRepositoryCustom<EN
     	
     	return getJpaQuery(query, entityClass).getResultList();
     }
+
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public FacetedPage<ENTITY_T> find(Map<String, Float> boostedFields, String matchingText, Class<ENTITY_T> entityClass, Pageable pageable, Map<String, String> facets) {
+		FullTextQuery query = getPagedJpaQuery(createQuery(boostedFields, matchingText, entityClass), entityClass, pageable);
+		enableFaceting(query, entityClass, facets);
+		return new FacetedPage<>(query.getResultList(), pageable, query.getResultSize(), getFacets(query, facets));
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public FacetedPage<Object[]> findProjections(Map<String, Float> boostedFields, String matchingText, Class<ENTITY_T> entityClass, Pageable pageable, Map<String, String> facets, String... projections) {
+		FullTextQuery query = getPagedJpaQuery(createQuery(boostedFields, matchingText, entityClass), entityClass, pageable);
+		query.setProjection(projections);
+		enableFaceting(query, entityClass, facets);
+		return new FacetedPage<>(query.getResultList(), pageable, query.getResultSize(), getFacets(query, facets));
+	}
+
+	private Query createQuery(Map<String, Float> boostedFields, String matchingText, Class<?> entityClass) {
+		Iterator<Map.Entry<String, Float>> fields = boostedFields.entrySet().iterator();
+		Map.Entry<String, Float> field = fields.next();
+		SimpleQueryStringMatchingContext context = getQueryBuilder(entityClass)
+				.simpleQueryString()
+				.onField(field.getKey()).boostedTo(field.getValue());
+		while (fields.hasNext()) {
+			field = fields.next();
+			context = context.andField(field.getKey()).boostedTo(field.getValue());
+		}
+		return context.matching(matchingText).createQuery();
+	}
+
+	/**
+	 * Makes the query count the most frequent values of each facet while collecting its hits.
+	 */
+	private void enableFaceting(FullTextQuery query, Class<?> entityClass, Map<String, String> facets) {
+		QueryBuilder queryBuilder = getQueryBuilder(entityClass);
+		FacetManager facetManager = query.getFacetManager();
+		facets.forEach((name, field) -> facetManager.enableFaceting(queryBuilder.facet()
+				.name(name)
+				.onField(field)
+				.discrete()
+				.orderedBy(FacetSortOrder.COUNT_DESC)
+				.includeZeroCounts(false)
+				.maxFacetCount(MAX_FACET_VALUES)
+				.createFacetingRequest()));
+	}
+
+	private static Map<String, Map<String, Integer>> getFacets(FullTextQuery query, Map<String, String> facets) {
+		Map<String, Map<String, Integer>> result = new LinkedHashMap<>();
+		for (String name : facets.keySet()) {
+			Map<String, Integer> counts = new LinkedHashMap<>();
+			query.getFacetManager().getFacets(name).forEach(facet -> counts.put(facet.getValue(), facet.getCount()));
+			result.put(name, counts);
+		}
+		return result;
+	}
+
+	/**
+	 * Query returning only the hits of the requested page: both offset and limit are applied by the index.
+	 */
+	private FullTextQuery getPagedJpaQuery(Query luceneQuery, Class<?> entityClass, Pageable pageable) {
+		FullTextQuery result = getJpaQuery(luceneQuery, entityClass);
+		if (pageable != null) {
+			result.setFirstResult(pageable.getOffset());
+			result.setMaxResults(pageable.getPageSize());
+		}
+		return result;
+	}
     
     private FullTextQuery getJpaQuery(Query luceneQuery, Class<?> entityClass) {
         FullTextQuery result = getFullTextEntityManager().createFullTextQuery(luceneQuery, entityClass);
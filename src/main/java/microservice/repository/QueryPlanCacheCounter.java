@@ -0,0 +1,120 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.repository;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Filter;
+import org.hibernate.engine.query.spi.HQLQueryPlan;
+import org.hibernate.engine.query.spi.QueryPlanCache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the hits and misses of the HQL query plan cache, which this Hibernate version does not count itself. The
+ * cache of the session factory is replaced by a counting one at startup; a plan is a hit when the cache returns an
+ * instance it has returned before, and a miss when it had to parse a new one.
+ */
+@Component
+public class QueryPlanCacheCounter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(QueryPlanCacheCounter.class);
+
+	private static final String QUERY_PLAN_CACHE_FIELD = "queryPlanCache";
+
+	@Autowired
+	private EntityManagerFactory emf;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private volatile boolean installed;
+
+	@PostConstruct
+	public void install() {
+		SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+		try {
+			Field field = findField(sessionFactory.getClass());
+			field.setAccessible(true);
+			field.set(sessionFactory, new CountingQueryPlanCache(sessionFactory));
+			installed = true;
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			LOG.warn("Query plan cache hits and misses will not be counted: {}", e.toString());
+		}
+	}
+
+	/**
+	 * @return Whether the counting cache could be installed; hits and misses stay 0 otherwise
+	 */
+	public boolean isInstalled() {
+		return installed;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	//============
+	// Utilities
+	//============
+	private static Field findField(Class<?> type) throws NoSuchFieldException {
+		for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+			for (Field field : current.getDeclaredFields()) {
+				if (field.getName().equals(QUERY_PLAN_CACHE_FIELD) && field.getType() == QueryPlanCache.class)
+					return field;
+			}
+		}
+		throw new NoSuchFieldException(type.getName() + "." + QUERY_PLAN_CACHE_FIELD);
+	}
+
+	private class CountingQueryPlanCache extends QueryPlanCache {
+
+		private static final long serialVersionUID = -2381367285916740121L;
+
+		/** Plans returned so far, weakly held so plans evicted from the cache can be collected */
+		private final transient Set<HQLQueryPlan> returned = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+		CountingQueryPlanCache(SessionFactoryImplementor factory) {
+			super(factory);
+		}
+
+		@Override
+		public HQLQueryPlan getHQLQueryPlan(String queryString, boolean shallow, Map<String, Filter> enabledFilters) {
+			HQLQueryPlan plan = super.getHQLQueryPlan(queryString, shallow, enabledFilters);
+			if (returned.add(plan))
+				misses.incrementAndGet();
+			else
+				hits.incrementAndGet();
+			return plan;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.repository;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * JPQL rendered from criteria queries, by query shape. Reusing the very same JPQL for every query of a shape skips
+ * building and rendering the criteria, and makes Hibernate find its parsed plan in the query plan cache.
+ * <p>
+ * Shapes are few (which filters are present, sizes bucketed), but sorts come from clients, so the number of
+ * templates is capped; queries of shapes beyond the cap are rendered every time.
+ */
+@Component
+public class QueryTemplateCache {
+
+	public static final int MAX_TEMPLATES = 1000;
+
+	private final ConcurrentMap<String, String> templates = new ConcurrentHashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param shape Key of the query shape
+	 * @param renderer Renders the JPQL of the shape, on misses
+	 * @return JPQL of the shape
+	 */
+	public String get(String shape, Supplier<String> renderer) {
+		String result = templates.get(shape);
+		if (result != null) {
+			hits.incrementAndGet();
+			return result;
+		}
+
+		misses.incrementAndGet();
+		result = renderer.get();
+		if (templates.size() < MAX_TEMPLATES)
+			templates.putIfAbsent(shape, result);
+		return result;
+	}
+
+	public int getSize() {
+		return templates.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.repository;
+
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import microservice.model.ThingEntity;
+
+/**
+ * Hibernate listener relaying the changes made to things to every {@link ThingChangeObserver}. Changes are relayed
+ * after the transaction commits (and dropped if it rolls back), so observers never see uncommitted state.
+ */
+@Component
+public class ThingChangeListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+	private static final long serialVersionUID = 6059282236745816327L;
+
+	private static final String NAME_PROPERTY = "name";
+
+	@Autowired
+	private transient EntityManagerFactory emf;
+
+	@Autowired
+	private transient List<ThingChangeObserver> observers;
+
+	@PostConstruct
+	public void register() {
+		EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+				.getServiceRegistry()
+				.getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_INSERT, this);
+		registry.appendListeners(EventType.POST_UPDATE, this);
+		registry.appendListeners(EventType.POST_DELETE, this);
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		if (event.getEntity() instanceof ThingEntity)
+			notifyAfterCommit((Long) event.getId(), null, getName(event.getPersister(), event.getState()));
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		if (event.getEntity() instanceof ThingEntity) {
+			String newName = getName(event.getPersister(), event.getState());
+			String oldName = (event.getOldState() == null) ? newName : getName(event.getPersister(), event.getOldState());
+			notifyAfterCommit((Long) event.getId(), oldName, newName);
+		}
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		if (event.getEntity() instanceof ThingEntity)
+			notifyAfterCommit((Long) event.getId(), getName(event.getPersister(), event.getDeletedState()), null);
+	}
+
+	@Override
+	public boolean requiresPostCommitHandling(EntityPersister persister) {
+		return false;
+	}
+
+	/** Still abstract in this Hibernate version, and superseded by {@link #requiresPostCommitHandling} */
+	@Override
+	@Deprecated
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return requiresPostCommitHandling(persister);
+	}
+
+	//============
+	// Utilities
+	//============
+	private void notifyAfterCommit(long id, String oldName, String newName) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			notifyObservers(id, oldName, newName);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				notifyObservers(id, oldName, newName);
+			}
+		});
+	}
+
+	private void notifyObservers(long id, String oldName, String newName) {
+		observers.forEach(observer -> observer.thingChanged(id, oldName, newName));
+	}
+
+	private static String getName(EntityPersister persister, Object[] state) {
+		String[] properties = persister.getPropertyNames();
+		for (int i = 0; i < properties.length; i++)
+			if (NAME_PROPERTY.equals(properties[i]))
+				return (String) state[i];
+		return null;
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.repository;
+
+/**
+ * Notified of every thing created, renamed or deleted, once the transaction making the change has committed. Any
+ * bean implementing it is registered automatically by {@link ThingChangeListener}.
+ */
+@FunctionalInterface
+public interface ThingChangeObserver {
+
+	/**
+	 * @param id Id of the thing changed
+	 * @param oldName Name before the change, or null if the thing has just been created
+	 * @param newName Name after the change, or null if the thing has been deleted
+	 */
+	void thingChanged(long id, String oldName, String newName);
+}
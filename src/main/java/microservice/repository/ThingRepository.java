@@ -23,6 +23,4 @@ import microservice.model.ThingEntity;
 
 @Repository
 public interface ThingRepository extends JpaRepository<ThingEntity, Long>, ThingRepositoryCustom {
-
-	ThingEntity findByName(String name);
 }
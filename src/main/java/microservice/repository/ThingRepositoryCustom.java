@@ -17,15 +17,127 @@
 package microservice.repository;
 
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import microservice.model.ThingCursor;
 import microservice.model.ThingEntity;
+import microservice.model.ThingField;
 import microservice.model.ThingQueryParameters;
+import microservice.model.ThingRow;
+import microservice.model.ThingWatermark;
 
 public interface ThingRepositoryCustom {
 
+	/**
+	 * Entity with the given name, looked up by natural id; hence served from the second level cache when possible.
+	 *
+	 * @param name Name of the entity
+	 * @return Entity found, or null if there is none with such name
+	 */
+	ThingEntity findByName(String name);
+
 	default List<ThingEntity> findMatching() {
 		return findMatching(new ThingQueryParameters());
 	}
 
 	List<ThingEntity> findMatching(ThingQueryParameters qParams);
+
+	default Page<ThingRow> findMatching(ThingQueryParameters qParams, Pageable pageable) {
+		return findMatching(qParams, ThingField.ALL, pageable);
+	}
+
+	/**
+	 * Page of the entities matching the query parameters. Offset, limit and sort orders are all applied by the
+	 * database, and the total number of matches is resolved with a separate count query only when needed.
+	 *
+	 * @param qParams Filters to apply
+	 * @param fields Fields to read. The id, and the properties sorted by, are read anyway; the other fields are left
+	 * null in the rows.
+	 * @param pageable Page requested. If null, all the matching entities are returned in a single page.
+	 * @return Requested page of matching entities, as read-only rows
+	 */
+	Page<ThingRow> findMatching(ThingQueryParameters qParams, Set<ThingField> fields, Pageable pageable);
+
+	/**
+	 * Page of the entities matching the query parameters, whose number is already known: they are not counted, and
+	 * pages past the last one are not even read.
+	 *
+	 * @param total Number of entities matching, such as the count of their watermark
+	 * @see #findMatching(ThingQueryParameters, Set, Pageable)
+	 */
+	Page<ThingRow> findMatching(ThingQueryParameters qParams, Set<ThingField> fields, Pageable pageable, long total);
+
+	default Slice<ThingRow> findMatching(ThingQueryParameters qParams, ThingCursor cursor, int size) {
+		return findMatching(qParams, ThingField.ALL, cursor, size);
+	}
+
+	/**
+	 * Slice of the entities matching the query parameters which follow the position of a cursor. The rows are
+	 * sought through the sort key of the cursor rather than skipped, and no total is counted; hence the cost of each
+	 * slice does not depend on how deep into the collection it is.
+	 *
+	 * @param qParams Filters to apply
+	 * @param fields Fields to read. The id, and the property of the cursor, are read anyway; the other fields are
+	 * left null in the rows.
+	 * @param cursor Position after which the slice starts
+	 * @param size Maximum number of entities in the slice
+	 * @return Slice of matching entities following the cursor, as read-only rows
+	 */
+	Slice<ThingRow> findMatching(ThingQueryParameters qParams, Set<ThingField> fields, ThingCursor cursor, int size);
+
+	/**
+	 * Runs several reads for the same query parameters with their names staged only once for all of them, when
+	 * there are so many that they are staged rather than listed (see {@link ThingRepositoryImpl}). Reads made by the
+	 * calling thread meanwhile, for the same names, query the names already staged.
+	 *
+	 * @param qParams Filters the reads apply
+	 * @param reads Reads to run
+	 * @return Result of the reads
+	 */
+	<RESULT_T> RESULT_T withNamesStaged(ThingQueryParameters qParams, Supplier<RESULT_T> reads);
+
+	/**
+	 * Walks all the entities matching the query parameters, sorted by id, through a forward-only database cursor.
+	 * The persistence context is cleared periodically, so memory usage does not depend on the number of rows.
+	 *
+	 * @param qParams Filters to apply
+	 * @param consumer Receives each entity; it must not hold on to them
+	 * @return Number of entities walked
+	 */
+	long scrollMatching(ThingQueryParameters qParams, Consumer<ThingEntity> consumer);
+
+	/**
+	 * Inserts all the entities passed as parameter within a single transaction, flushing them as JDBC batches and
+	 * detaching them afterwards. Either all of them are inserted or none is.
+	 *
+	 * @param entities New entities to insert
+	 */
+	void insertAll(List<ThingEntity> entities);
+
+	/**
+	 * Reads only the given fields of an entity, bypassing the persistence context and the second level cache.
+	 *
+	 * @param id Id of the entity
+	 * @param fields Fields to read. The id is read anyway; the other fields are left null in the row.
+	 * @return Entity with the given id, as a read-only row, or null if there is none
+	 */
+	ThingRow findRow(long id, Set<ThingField> fields);
+
+	/**
+	 * @param id Id of the entity
+	 * @return Watermark of the entity with the given id, empty if there is none
+	 */
+	ThingWatermark findWatermark(long id);
+
+	/**
+	 * @param qParams Filters to apply
+	 * @return Watermark of all the entities matching the query parameters
+	 */
+	ThingWatermark findWatermark(ThingQueryParameters qParams);
 }
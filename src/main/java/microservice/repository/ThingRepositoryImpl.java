@@ -16,33 +16,623 @@
 
 package microservice.repository;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.AbstractQuery;
 import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.criteria.Subquery;
 
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import microservice.ConfigProperties;
+import microservice.model.ThingCursor;
 import microservice.model.ThingEntity;
 import microservice.model.ThingEntity_;
+import microservice.model.ThingField;
+import microservice.model.ThingNameFilter;
+import microservice.model.ThingNameFilter_;
 import microservice.model.ThingQueryParameters;
+import microservice.model.ThingRow;
+import microservice.model.ThingWatermark;
 
+/**
+ * Queries run in read-only transactions: Hibernate neither flushes nor keeps dirty checking snapshots for them.
+ * List reads go further and project only the columns requested straight into {@link ThingRow}s, skipping the
+ * persistence context.
+ * <p>
+ * How things are filtered by name depends on how many names are requested: up to
+ * {@link ConfigProperties#getNamesInListMaxSize()} in a single {@code IN} list; up to
+ * {@link ConfigProperties#getNamesStagingThreshold()} by fanning out one query per chunk of names and merging their
+ * results in memory, sorted as requested (names are unique, so results are bounded by the number of names); beyond
+ * that, by staging the names in {@link ThingNameFilter} and filtering with a subquery, so that the database does
+ * the sorting and paging. Results are the same whatever the strategy.
+ * <p>
+ * Names are staged before the read-only transaction of the reads starts, never from within it: a read never holds a
+ * connection while waiting for another one, which could exhaust the connection pool when every connection is held
+ * by such reads.
+ */
+@Transactional(readOnly = true)
 public class ThingRepositoryImpl implements ThingRepositoryCustom {
 
+	private static final int STAGING_FLUSH_SIZE = 1000;
+
+	private static final String PARAM_ID = "id";
+	private static final String PARAM_NAMES = "names";
+	private static final String PARAM_FILTER_ID = "filterId";
+	private static final String PARAM_CREATED_BY = "createdBy";
+	private static final String PARAM_CREATED_AFTER = "createdAfter";
+	private static final String PARAM_CREATED_BEFORE = "createdBefore";
+	private static final String PARAM_LAST_ID = "lastId";
+	private static final String PARAM_LAST_VALUE = "lastValue";
+
 	@PersistenceContext
 	private EntityManager em;
 
+	@Autowired
+	private ConfigProperties config;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private QueryTemplateCache templates;
+
+	/** Names staged by {@link #withNamesStaged} for the reads of the current thread */
+	private final ThreadLocal<StagedNames> currentStagedNames = new ThreadLocal<>();
+
+	@Override
+	public ThingEntity findByName(String name) {
+		return em.unwrap(Session.class).bySimpleNaturalId(ThingEntity.class).load(name);
+	}
+
 	@Override
+	@Transactional(propagation = Propagation.SUPPORTS)
 	public List<ThingEntity> findMatching(ThingQueryParameters qParams) {
+		return read(qParams, filters -> filters.stream()
+				.flatMap(filter -> createQuery(ThingEntity.class, null, qParams, filter, null, null).getResultList().stream())
+				.sorted(Comparator.comparingLong(ThingEntity::getId))
+				.collect(Collectors.toList()));
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public Page<ThingRow> findMatching(ThingQueryParameters qParams, Set<ThingField> fields, Pageable pageable) {
+		return read(qParams, filters -> {
+			if (pageable == null)
+				return new PageImpl<>(findRows(qParams, fields, filters, null, null, 0, Integer.MAX_VALUE));
+
+			List<ThingRow> content = findRows(qParams, fields, filters, null, pageable.getSort(), pageable.getOffset(), pageable.getPageSize());
+			return PageableExecutionUtils.getPage(content, pageable, () -> count(qParams, filters));
+		});
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public Page<ThingRow> findMatching(ThingQueryParameters qParams, Set<ThingField> fields, Pageable pageable, long total) {
+		if (pageable.getOffset() >= total)
+			return new PageImpl<>(Collections.emptyList(), pageable, total);
+		return read(qParams, filters -> new PageImpl<>(
+				findRows(qParams, fields, filters, null, pageable.getSort(), pageable.getOffset(), pageable.getPageSize()), pageable, total));
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public Slice<ThingRow> findMatching(ThingQueryParameters qParams, Set<ThingField> fields, ThingCursor cursor, int size) {
+		// One extra row tells whether there is a next slice, without counting
+		List<ThingRow> content = read(qParams, filters -> findRows(qParams, fields, filters, cursor, cursor.getSort(), 0, size + 1));
+		boolean hasNext = content.size() > size;
+		return new SliceImpl<>(hasNext ? content.subList(0, size) : content, new PageRequest(0, size, cursor.getSort()), hasNext);
+	}
+
+	/**
+	 * Does not start a transaction of its own, so each read still runs in its own; only the staged names are shared.
+	 */
+	@Override
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public <RESULT_T> RESULT_T withNamesStaged(ThingQueryParameters qParams, Supplier<RESULT_T> reads) {
+		Set<String> names = qParams.getNames();
+		StagedNames previous = currentStagedNames.get();
+		if (names == null || names.size() <= config.getNamesStagingThreshold() || (previous != null && previous.names.equals(names)))
+			return reads.get();
+
+		String filterId = stageNames(names);
+		currentStagedNames.set(new StagedNames(names, filterId));
+		try {
+			return reads.get();
+		} finally {
+			if (previous == null)
+				currentStagedNames.remove();
+			else
+				currentStagedNames.set(previous);
+			unstageNames(filterId);
+		}
+	}
+
+	/**
+	 * When names are fanned out in chunks, things are streamed chunk after chunk, each chunk sorted by id.
+	 */
+	@Override
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public long scrollMatching(ThingQueryParameters qParams, Consumer<ThingEntity> consumer) {
+		return read(qParams, filters -> filters.stream()
+				.mapToLong(filter -> scrollMatching(qParams, filter, consumer))
+				.sum());
+	}
+
+	@Override
+	@Transactional
+	public void insertAll(List<ThingEntity> entities) {
+		entities.forEach(em::persist);
+		em.flush();
+		em.clear();
+	}
+
+	@Override
+	public ThingRow findRow(long id, Set<ThingField> fields) {
+		Set<ThingField> selectedFields = selectFields(fields, null);
+		String jpql = templates.get(Tuple.class.getSimpleName() + "|fields:" + selectedFields + "|id", () -> {
+			CriteriaBuilder cb = em.getCriteriaBuilder();
+			CriteriaQuery<Tuple> criteria = cb.createTupleQuery();
+			Root<ThingEntity> srcEntity = criteria.from(ThingEntity.class);
+			criteria.select(createSelection(cb, srcEntity, Tuple.class, selectedFields));
+			criteria.where(cb.equal(srcEntity.get(ThingEntity_.id), cb.parameter(Long.class, PARAM_ID)));
+			return render(criteria);
+		});
+		List<Tuple> tuples = em.createQuery(jpql, Tuple.class).setParameter(PARAM_ID, id).getResultList();
+		return tuples.isEmpty() ? null : toRow(tuples.get(0), selectedFields);
+	}
+
+	@Override
+	public ThingWatermark findWatermark(long id) {
+		String jpql = templates.get(ThingWatermark.class.getSimpleName() + "|id", () -> {
+			CriteriaBuilder cb = em.getCriteriaBuilder();
+			CriteriaQuery<ThingWatermark> criteria = cb.createQuery(ThingWatermark.class);
+			Root<ThingEntity> srcEntity = criteria.from(ThingEntity.class);
+			criteria.select(createSelection(cb, srcEntity, ThingWatermark.class, null));
+			criteria.where(cb.equal(srcEntity.get(ThingEntity_.id), cb.parameter(Long.class, PARAM_ID)));
+			return render(criteria);
+		});
+		return em.createQuery(jpql, ThingWatermark.class).setParameter(PARAM_ID, id).getSingleResult();
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public ThingWatermark findWatermark(ThingQueryParameters qParams) {
+		return read(qParams, filters -> filters.stream()
+				.map(filter -> createQuery(ThingWatermark.class, null, qParams, filter, null, null).getSingleResult())
+				.reduce(ThingWatermark::plus)
+				.get());
+	}
+
+	//============
+	// Utilities
+	//============
+	/**
+	 * Runs a query once per names filter required by the names requested (a single null filter when there are no
+	 * names), in a read-only transaction started once the names are staged, if needed.
+	 */
+	private <RESULT_T> RESULT_T read(ThingQueryParameters qParams, Function<List<NamesFilter>, RESULT_T> query) {
+		return withNamesStaged(qParams, () -> transaction(true)
+				.execute(status -> withNamesFilters(qParams, query)));
+	}
+
+	/**
+	 * Names filters required by the names requested, which are already staged by {@link #withNamesStaged} if there
+	 * are that many.
+	 */
+	private <RESULT_T> RESULT_T withNamesFilters(ThingQueryParameters qParams, Function<List<NamesFilter>, RESULT_T> query) {
+		Set<String> names = qParams.getNames();
+		int inListMaxSize = config.getNamesInListMaxSize();
+		if (names == null || names.isEmpty())
+			return query.apply(Collections.singletonList(null));
+		if (names.size() <= inListMaxSize)
+			return query.apply(Collections.singletonList(NamesFilter.in(names)));
+
+		if (names.size() <= config.getNamesStagingThreshold()) {
+			List<NamesFilter> chunks = new ArrayList<>();
+			List<String> chunk = new ArrayList<>(inListMaxSize);
+			for (String name : names) {
+				chunk.add(name);
+				if (chunk.size() == inListMaxSize) {
+					chunks.add(NamesFilter.in(chunk));
+					chunk = new ArrayList<>(inListMaxSize);
+				}
+			}
+			if (!chunk.isEmpty())
+				chunks.add(NamesFilter.in(chunk));
+			return query.apply(chunks);
+		}
+
+		StagedNames staged = currentStagedNames.get();
+		return query.apply(Collections.singletonList(NamesFilter.staged(staged.filterId)));
+	}
+
+	/**
+	 * Stores the names in {@link ThingNameFilter}, in the transaction of the caller if there is one (on the same
+	 * connection, so seen by its reads), or else in one of its own, committed before returning so that the read-only
+	 * transactions querying them see them.
+	 *
+	 * @return Id of the filter the names are stored under
+	 */
+	private String stageNames(Collection<String> names) {
+		String result = UUID.randomUUID().toString();
+		transaction(false).execute(status -> {
+			// Only the names staged are detached, not the entities of the caller's transaction
+			List<ThingNameFilter> chunk = new ArrayList<>(STAGING_FLUSH_SIZE);
+			for (String name : names) {
+				ThingNameFilter filter = new ThingNameFilter(result, name);
+				em.persist(filter);
+				chunk.add(filter);
+				if (chunk.size() == STAGING_FLUSH_SIZE)
+					flushStaged(chunk);
+			}
+			flushStaged(chunk);
+			return null;
+		});
+		return result;
+	}
+
+	private void flushStaged(List<ThingNameFilter> chunk) {
+		em.flush();
+		chunk.forEach(em::detach);
+		chunk.clear();
+	}
+
+	private void unstageNames(String filterId) {
+		transaction(false).execute(status -> {
+			CriteriaBuilder cb = em.getCriteriaBuilder();
+			CriteriaDelete<ThingNameFilter> criteria = cb.createCriteriaDelete(ThingNameFilter.class);
+			Root<ThingNameFilter> srcFilter = criteria.from(ThingNameFilter.class);
+			criteria.where(cb.equal(srcFilter.get(ThingNameFilter_.filterId), filterId));
+			return em.createQuery(criteria).executeUpdate();
+		});
+	}
+
+	/**
+	 * @return Template running in the transaction of the caller if there is one, or else in one of its own
+	 */
+	private TransactionTemplate transaction(boolean readOnly) {
+		TransactionTemplate result = new TransactionTemplate(transactionManager);
+		result.setReadOnly(readOnly);
+		return result;
+	}
+
+	/**
+	 * Rows matching, sorted as requested, skipping the first ones, with only the selected columns read (see
+	 * {@link #selectFields}). With several names filters, the first {@code firstResult + maxResults} rows of each one
+	 * are merged in memory.
+	 */
+	private List<ThingRow> findRows(
+			ThingQueryParameters qParams, Set<ThingField> fields, List<NamesFilter> filters, ThingCursor cursor, Sort sort, int firstResult, int maxResults) {
+		Set<ThingField> selectedFields = selectFields(fields, sort);
+		if (filters.size() == 1)
+			return createQuery(Tuple.class, selectedFields, qParams, filters.get(0), cursor, sort)
+					.setFirstResult(firstResult)
+					.setMaxResults(maxResults)
+					.getResultList().stream()
+					.map(tuple -> toRow(tuple, selectedFields))
+					.collect(Collectors.toList());
+
+		int chunkMaxResults = (int) Math.min(Integer.MAX_VALUE, (long) firstResult + maxResults);
+		return filters.stream()
+				.flatMap(filter -> createQuery(Tuple.class, selectedFields, qParams, filter, cursor, sort).setMaxResults(chunkMaxResults).getResultList().stream())
+				.map(tuple -> toRow(tuple, selectedFields))
+				.sorted(ThingRow.comparator(sort))
+				.skip(firstResult)
+				.limit(maxResults)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @return Fields requested plus those rows can not go without: the id, for links and as tie breaker, and the
+	 * properties sorted by, to merge rows and to build cursors
+	 */
+	private static Set<ThingField> selectFields(Set<ThingField> fields, Sort sort) {
+		Set<ThingField> result = EnumSet.of(ThingField.ID);
+		result.addAll(fields);
+		if (sort != null) {
+			for (Sort.Order order : sort) {
+				ThingField field = ThingField.forProperty(order.getProperty());
+				if (field != null)
+					result.add(field);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param fields Fields selected, in the order of the tuple
+	 */
+	private static ThingRow toRow(Tuple tuple, Set<ThingField> fields) {
+		Map<ThingField, Object> values = new EnumMap<>(ThingField.class);
+		int index = 0;
+		for (ThingField field : fields)
+			values.put(field, tuple.get(index++));
+		return new ThingRow(
+				(Long) values.get(ThingField.ID),
+				(String) values.get(ThingField.NAME),
+				(Instant) values.get(ThingField.CREATED_ON),
+				(String) values.get(ThingField.CREATED_BY));
+	}
+
+	private long scrollMatching(ThingQueryParameters qParams, NamesFilter filter, Consumer<ThingEntity> consumer) {
+		int fetchSize = config.getExportFetchSize();
+		Query<?> query = createQuery(ThingEntity.class, null, qParams, filter, null, null).unwrap(Query.class)
+				.setReadOnly(true)
+				.setFetchSize(fetchSize)
+				.setCacheMode(CacheMode.IGNORE);
+
+		long count = 0;
+		ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (results.next()) {
+				consumer.accept((ThingEntity) results.get(0));
+				if (++count % fetchSize == 0)
+					em.clear();
+			}
+		} finally {
+			results.close();
+		}
+		return count;
+	}
+
+	/**
+	 * Query for the things matching the query parameters, following the cursor (if any), sorted as requested. Its
+	 * JPQL is rendered once per shape (see {@link #getShape}) and reused, with all the values bound as parameters, so
+	 * neither the criteria nor the query plan is built again for queries differing only in their values.
+	 *
+	 * @param resultClass Either {@link ThingEntity} or {@link Tuple} of the fields selected, or {@link Long} to count
+	 * them, or {@link ThingWatermark} to summarize them
+	 * @param fields Fields selected when the result is a tuple, in their order; null otherwise
+	 * @param namesFilter Names to filter by, instead of those of the query parameters. Null for no filtering by name.
+	 */
+	private <RESULT_T> TypedQuery<RESULT_T> createQuery(
+			Class<RESULT_T> resultClass, Set<ThingField> fields, ThingQueryParameters qParams, NamesFilter namesFilter, ThingCursor cursor, Sort sort) {
+		String jpql = templates.get(getShape(resultClass, fields, qParams, namesFilter, cursor, sort),
+				() -> renderQuery(resultClass, fields, qParams, namesFilter, cursor, sort));
+		TypedQuery<RESULT_T> result = em.createQuery(jpql, resultClass);
+		if (namesFilter != null)
+			namesFilter.bind(result);
+		if (qParams.getCreatedBy() != null)
+			result.setParameter(PARAM_CREATED_BY, qParams.getCreatedBy());
+		if (qParams.getCreatedAfter() != null)
+			result.setParameter(PARAM_CREATED_AFTER, qParams.getCreatedAfter());
+		if (qParams.getCreatedBefore() != null)
+			result.setParameter(PARAM_CREATED_BEFORE, qParams.getCreatedBefore());
+		if (cursor != null && !cursor.isFirst()) {
+			result.setParameter(PARAM_LAST_ID, cursor.getLastId());
+			if (!cursor.isSortedById())
+				result.setParameter(PARAM_LAST_VALUE, cursor.getLastValue());
+		}
+		return result;
+	}
+
+	/**
+	 * @return Key identifying the JPQL of a query: the fields selected, which filters are present (not their values),
+	 * the size bucket of the names listed, the cursor property and direction, and the sort
+	 */
+	private static String getShape(
+			Class<?> resultClass, Set<ThingField> fields, ThingQueryParameters qParams, NamesFilter namesFilter, ThingCursor cursor, Sort sort) {
+		StringBuilder result = new StringBuilder(resultClass.getSimpleName());
+		if (fields != null)
+			result.append("|fields:").append(fields);
+		if (namesFilter != null)
+			result.append("|names:").append(namesFilter.getShape());
+		if (qParams.getCreatedBy() != null)
+			result.append("|createdBy");
+		if (qParams.getCreatedAfter() != null)
+			result.append("|createdAfter");
+		if (qParams.getCreatedBefore() != null)
+			result.append("|createdBefore");
+		if (cursor != null && !cursor.isFirst())
+			result.append("|after:").append(cursor.getProperty()).append(cursor.isAscending() ? ":ASC" : ":DESC");
+		if (sort != null)
+			result.append("|sort:").append(sort);
+		return result.toString();
+	}
+
+	private <RESULT_T> String renderQuery(
+			Class<RESULT_T> resultClass, Set<ThingField> fields, ThingQueryParameters qParams, NamesFilter namesFilter, ThingCursor cursor, Sort sort) {
 		CriteriaBuilder cb = em.getCriteriaBuilder();
-		CriteriaQuery<ThingEntity> criteria = cb.createQuery(ThingEntity.class);
+		CriteriaQuery<RESULT_T> criteria = cb.createQuery(resultClass);
 		Root<ThingEntity> srcEntity = criteria.from(ThingEntity.class);
-		criteria.select(srcEntity);
-		Set<String> names = qParams.getNames();
-		if (names != null && !names.isEmpty())
-			criteria.where(srcEntity.get(ThingEntity_.name).in(names));
-		return em.createQuery(criteria).getResultList();
+		List<Predicate> predicates = createPredicates(cb, criteria, srcEntity, qParams, namesFilter);
+		if (cursor != null && !cursor.isFirst())
+			predicates.add(createSeekPredicate(cb, srcEntity, cursor));
+		criteria.select(createSelection(cb, srcEntity, resultClass, fields));
+		criteria.where(predicates.toArray(new Predicate[predicates.size()]));
+		if (resultClass.equals(ThingEntity.class) || resultClass.equals(Tuple.class))
+			criteria.orderBy(createOrders(cb, srcEntity, sort));
+		return render(criteria);
+	}
+
+	private String render(CriteriaQuery<?> criteria) {
+		return em.createQuery(criteria).unwrap(Query.class).getQueryString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <RESULT_T> Selection<RESULT_T> createSelection(
+			CriteriaBuilder cb, Root<ThingEntity> srcEntity, Class<RESULT_T> resultClass, Set<ThingField> fields) {
+		if (resultClass.equals(Long.class))
+			return (Selection<RESULT_T>) cb.count(srcEntity);
+		if (resultClass.equals(ThingWatermark.class))
+			return (Selection<RESULT_T>) cb.construct(ThingWatermark.class,
+					cb.count(srcEntity),
+					cb.sum(srcEntity.get(ThingEntity_.version)),
+					cb.greatest(srcEntity.get(ThingEntity_.modifiedOn)));
+		if (resultClass.equals(Tuple.class))
+			return (Selection<RESULT_T>) cb.tuple(fields.stream()
+					.map(field -> srcEntity.get(field.getProperty()))
+					.toArray(Selection<?>[]::new));
+		return (Selection<RESULT_T>) srcEntity;
+	}
+
+	private long count(ThingQueryParameters qParams, List<NamesFilter> namesFilters) {
+		return namesFilters.stream()
+				.mapToLong(namesFilter -> createQuery(Long.class, null, qParams, namesFilter, null, null).getSingleResult())
+				.sum();
+	}
+
+	private List<Predicate> createPredicates(
+			CriteriaBuilder cb, AbstractQuery<?> criteria, Root<ThingEntity> srcEntity, ThingQueryParameters qParams, NamesFilter namesFilter) {
+		List<Predicate> result = new ArrayList<>();
+		if (namesFilter != null)
+			result.add(namesFilter.toPredicate(cb, criteria, srcEntity));
+		if (qParams.getCreatedBy() != null)
+			result.add(cb.equal(srcEntity.get(ThingEntity_.createdBy), cb.parameter(String.class, PARAM_CREATED_BY)));
+		if (qParams.getCreatedAfter() != null)
+			result.add(cb.greaterThanOrEqualTo(srcEntity.get(ThingEntity_.createdOn), cb.parameter(Instant.class, PARAM_CREATED_AFTER)));
+		if (qParams.getCreatedBefore() != null)
+			result.add(cb.lessThan(srcEntity.get(ThingEntity_.createdOn), cb.parameter(Instant.class, PARAM_CREATED_BEFORE)));
+		return result;
+	}
+
+	/**
+	 * Rows strictly after the cursor: {@code key > last OR (key = last AND id > lastId)}, or the mirrored comparison
+	 * when sorting in descending order.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Predicate createSeekPredicate(CriteriaBuilder cb, Root<ThingEntity> srcEntity, ThingCursor cursor) {
+		Path<Long> id = srcEntity.get(ThingEntity_.id);
+		ParameterExpression<Long> lastId = cb.parameter(Long.class, PARAM_LAST_ID);
+		Predicate afterId = cursor.isAscending() ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId);
+		if (cursor.isSortedById())
+			return afterId;
+
+		Path<Comparable> key = srcEntity.get(cursor.getProperty());
+		ParameterExpression<Comparable> lastValue = cb.parameter((Class<Comparable>) key.getJavaType(), PARAM_LAST_VALUE);
+		Predicate afterKey = cursor.isAscending() ? cb.greaterThan(key, lastValue) : cb.lessThan(key, lastValue);
+		return cb.or(afterKey, cb.and(cb.equal(key, lastValue), afterId));
+	}
+
+	/**
+	 * Requested sort orders followed by {@code id} as tie breaker (in the direction of the last of them), so
+	 * consecutive pages never overlap nor skip rows.
+	 */
+	private List<Order> createOrders(CriteriaBuilder cb, Root<ThingEntity> srcEntity, Sort sort) {
+		List<Order> result = new ArrayList<>();
+		Direction tieBreakerDirection = Direction.ASC;
+		if (sort != null) {
+			result.addAll(QueryUtils.toOrders(sort, srcEntity, cb));
+			for (Sort.Order order : sort)
+				tieBreakerDirection = order.getDirection();
+		}
+
+		if (sort == null || sort.getOrderFor(ThingEntity_.id.getName()) == null) {
+			Path<Long> id = srcEntity.get(ThingEntity_.id);
+			result.add(tieBreakerDirection.isAscending() ? cb.asc(id) : cb.desc(id));
+		}
+		return result;
+	}
+
+	/**
+	 * Names to filter things by: either listed in the query or staged in {@link ThingNameFilter}. Listed names are
+	 * bound as a single list parameter, padded (repeating the last name) to the next power of two: the SQL of the
+	 * query only changes with the bucket, not with the exact number of names.
+	 */
+	private static class NamesFilter {
+
+		static NamesFilter in(Collection<String> names) {
+			return new NamesFilter(new ArrayList<>(names), null);
+		}
+
+		static NamesFilter staged(String filterId) {
+			return new NamesFilter(null, filterId);
+		}
+
+		private final List<String> names;
+		private final String filterId;
+
+		private NamesFilter(List<String> names, String filterId) {
+			this.names = names;
+			this.filterId = filterId;
+		}
+
+		String getShape() {
+			return (names == null) ? "staged" : String.valueOf(getBucketSize());
+		}
+
+		private int getBucketSize() {
+			return Math.max(1, Integer.highestOneBit(names.size() - 1) << 1);
+		}
+
+		Predicate toPredicate(CriteriaBuilder cb, AbstractQuery<?> criteria, Root<ThingEntity> srcEntity) {
+			Path<String> name = srcEntity.get(ThingEntity_.name);
+			if (names != null)
+				return name.in(cb.parameter(List.class, PARAM_NAMES));
+
+			Subquery<String> stagedNames = criteria.subquery(String.class);
+			Root<ThingNameFilter> srcFilter = stagedNames.from(ThingNameFilter.class);
+			stagedNames.select(srcFilter.get(ThingNameFilter_.name));
+			stagedNames.where(cb.equal(srcFilter.get(ThingNameFilter_.filterId), cb.parameter(String.class, PARAM_FILTER_ID)));
+			return name.in(stagedNames);
+		}
+
+		void bind(TypedQuery<?> query) {
+			if (names == null) {
+				query.setParameter(PARAM_FILTER_ID, filterId);
+				return;
+			}
+			List<String> paddedNames = new ArrayList<>(names);
+			while (paddedNames.size() < getBucketSize())
+				paddedNames.add(names.get(names.size() - 1));
+			query.setParameter(PARAM_NAMES, paddedNames);
+		}
+	}
+
+	private static class StagedNames {
+
+		private final Set<String> names;
+		private final String filterId;
+
+		StagedNames(Set<String> names, String filterId) {
+			this.names = names;
+			this.filterId = filterId;
+		}
 	}
 }
@@ -16,9 +16,76 @@
 
 package microservice.service;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import microservice.model.ThingCursor;
 import microservice.model.ThingEntity;
+import microservice.model.ThingField;
+import microservice.model.ThingQueryParameters;
+import microservice.model.ThingRow;
+import microservice.model.ThingWatermark;
 
+/**
+ * Reads of things are coalesced: concurrent identical reads share a single database call, and its result (see
+ * {@link SingleFlight}). Results of reads are therefore shared and must not be modified.
+ * <p>
+ * Watermarks are not coalesced: they validate what a client holds, so one read after a write must see it, not share
+ * the result of a read started before.
+ */
 public interface AppService {
 
+	/**
+	 * @return Thing with the given id, or null if there is none
+	 */
+	ThingEntity findThing(long id);
+
+	/**
+	 * @see microservice.repository.ThingRepositoryCustom#findRow(long, Set)
+	 */
+	ThingRow findThingRow(long id, Set<ThingField> fields);
+
+	/**
+	 * @see microservice.repository.ThingRepositoryCustom#findMatching(ThingQueryParameters, Set, Pageable, long)
+	 */
+	Page<ThingRow> findThings(ThingQueryParameters qParams, Set<ThingField> fields, Pageable pageable, long total);
+
+	/**
+	 * @see microservice.repository.ThingRepositoryCustom#findMatching(ThingQueryParameters, Set, ThingCursor, int)
+	 */
+	Slice<ThingRow> findThings(ThingQueryParameters qParams, Set<ThingField> fields, ThingCursor cursor, int size);
+
+	/**
+	 * @see microservice.repository.ThingRepositoryCustom#withNamesStaged(ThingQueryParameters, Supplier)
+	 */
+	<RESULT_T> RESULT_T withNamesStaged(ThingQueryParameters qParams, Supplier<RESULT_T> reads);
+
+	ThingWatermark findWatermark(long id);
+
+	ThingWatermark findWatermark(ThingQueryParameters qParams);
+
+	/**
+	 * @return Coalescing of each kind of read, for metrics
+	 */
+	List<SingleFlight<?>> getSingleFlights();
+
 	ThingEntity updateThing(Long id, String name, String user);
+
+	/**
+	 * Creates a thing for each name consumed from the iterator, in transactions of
+	 * {@code microservice.import-chunk-size} rows. Rows which can not be inserted (blank or duplicate names, for
+	 * instance) are reported as failures without aborting the import.
+	 *
+	 * @param names Names of the things to create, consumed incrementally. Its {@code next()} method may throw
+	 * {@link IllegalArgumentException} for a malformed row, which is then reported as a failure.
+	 * @param user User creating the things
+	 * @return Summary of the import
+	 */
+	ImportReport importThings(Iterator<String> names, String user);
 }
@@ -16,11 +16,32 @@
 
 package microservice.service;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import microservice.ConfigProperties;
+import microservice.model.ThingCursor;
 import microservice.model.ThingEntity;
+import microservice.model.ThingField;
+import microservice.model.ThingQueryParameters;
+import microservice.model.ThingRow;
+import microservice.model.ThingWatermark;
 import microservice.repository.ThingRepository;
 
 @Service
@@ -38,11 +59,124 @@ public class AppServiceImpl implements AppService {
 	@Autowired
 	private ThingRepository repo;
 
+	@Autowired
+	private ConfigProperties config;
+
+	private final SingleFlight<Long> thingsById = new SingleFlight<>("findThing");
+	private final SingleFlight<List<Object>> thingRows = new SingleFlight<>("findThingRow");
+	private final SingleFlight<List<Object>> thingPages = new SingleFlight<>("findThings");
+
+	@Override
+	public ThingEntity findThing(long id) {
+		return thingsById.execute(id, () -> repo.findOne(id));
+	}
+
+	@Override
+	public ThingRow findThingRow(long id, Set<ThingField> fields) {
+		return thingRows.execute(Arrays.asList(id, fields), () -> repo.findRow(id, fields));
+	}
+
 	@Override
+	public Page<ThingRow> findThings(ThingQueryParameters qParams, Set<ThingField> fields, Pageable pageable, long total) {
+		return thingPages.execute(Arrays.asList(qParams, fields, pageable, total), () -> repo.findMatching(qParams, fields, pageable, total));
+	}
+
+	@Override
+	public Slice<ThingRow> findThings(ThingQueryParameters qParams, Set<ThingField> fields, ThingCursor cursor, int size) {
+		return thingPages.execute(Arrays.asList(qParams, fields, cursor, size), () -> repo.findMatching(qParams, fields, cursor, size));
+	}
+
+	@Override
+	public <RESULT_T> RESULT_T withNamesStaged(ThingQueryParameters qParams, Supplier<RESULT_T> reads) {
+		return repo.withNamesStaged(qParams, reads);
+	}
+
+	@Override
+	public ThingWatermark findWatermark(long id) {
+		return repo.findWatermark(id);
+	}
+
+	@Override
+	public ThingWatermark findWatermark(ThingQueryParameters qParams) {
+		return repo.findWatermark(qParams);
+	}
+
+	@Override
+	public List<SingleFlight<?>> getSingleFlights() {
+		return Arrays.asList(thingsById, thingRows, thingPages);
+	}
+
+	/**
+	 * Loads and renames the thing within a single transaction; on commit, the read-write cache strategy replaces both
+	 * its entry in the entity cache and its (old and new) name in the natural id cache.
+	 */
+	@Override
+	@Transactional
 	public ThingEntity updateThing(Long id, String name, String user) {
 		ThingEntity entity = findEntity(repo, ThingEntity.class, id);
 		entity.setName(name);
 		return repo.saveAndFlush(entity);
 	}
-}
 
+	@Override
+	public ImportReport importThings(Iterator<String> names, String user) {
+		ImportReport report = new ImportReport();
+		Map<Long, String> chunk = new LinkedHashMap<>();
+		long row = 0;
+		while (names.hasNext()) {
+			String name;
+			try {
+				row++;
+				name = names.next();
+			} catch (IllegalArgumentException e) {
+				report.addFailure(row, null, e.getMessage());
+				continue;
+			}
+
+			if (!StringUtils.hasText(name)) {
+				report.addFailure(row, name, "Name must not be blank");
+				continue;
+			}
+
+			chunk.put(row, name);
+			if (chunk.size() >= config.getImportChunkSize()) {
+				importChunk(chunk, user, report);
+				chunk.clear();
+			}
+		}
+
+		if (!chunk.isEmpty())
+			importChunk(chunk, user, report);
+		return report.complete();
+	}
+
+	/**
+	 * Inserts a chunk of rows in a single transaction. When that fails, the chunk has been rolled back as a whole,
+	 * so its rows are retried one by one to tell the bad ones apart.
+	 */
+	private void importChunk(Map<Long, String> rows, String user, ImportReport report) {
+		try {
+			List<ThingEntity> entities = rows.values().stream()
+					.map(name -> new ThingEntity(name, user))
+					.collect(Collectors.toList());
+			repo.insertAll(entities);
+			report.addImported(entities.size());
+		} catch (RuntimeException chunkException) {
+			rows.forEach((row, name) -> {
+				try {
+					repo.insertAll(Collections.singletonList(new ThingEntity(name, user)));
+					report.addImported(1);
+				} catch (RuntimeException e) {
+					report.addFailure(row, name, getMostSpecificCause(e).getMessage());
+				}
+			});
+		}
+	}
+
+	private static Throwable getMostSpecificCause(Throwable exception) {
+		Throwable cause = exception;
+		while (cause.getCause() != null && cause.getCause() != cause)
+			cause = cause.getCause();
+		return cause;
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a bulk import: throughput and the rows which could not be imported. Only the first
+ * {@link #MAX_FAILURES_REPORTED} failures are detailed; the rest are just counted.
+ */
+public class ImportReport {
+
+	public static final int MAX_FAILURES_REPORTED = 1000;
+
+	private final long startNanos = System.nanoTime();
+	private long elapsedNanos;
+	private long imported;
+	private long failed;
+	private final List<RowFailure> failures = new ArrayList<>();
+
+	void addImported(int rows) {
+		imported += rows;
+	}
+
+	void addFailure(long row, String value, String reason) {
+		if (failed++ < MAX_FAILURES_REPORTED)
+			failures.add(new RowFailure(row, value, reason));
+	}
+
+	ImportReport complete() {
+		elapsedNanos = System.nanoTime() - startNanos;
+		return this;
+	}
+
+	public long getRows() {
+		return imported + failed;
+	}
+
+	public long getImported() {
+		return imported;
+	}
+
+	public long getFailed() {
+		return failed;
+	}
+
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+	}
+
+	public double getRowsPerSecond() {
+		return (elapsedNanos == 0) ? 0 : imported * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+
+	public List<RowFailure> getFailures() {
+		return failures;
+	}
+
+	public static class RowFailure {
+
+		private final long row;
+		private final String value;
+		private final String reason;
+
+		public RowFailure(long row, String value, String reason) {
+			this.row = row;
+			this.value = value;
+			this.reason = reason;
+		}
+
+		/**
+		 * @return 1-based position of the row within the payload, not counting headers nor blank lines
+		 */
+		public long getRow() {
+			return row;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		public String getReason() {
+			return reason;
+		}
+	}
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.service;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import microservice.ConfigProperties;
+import microservice.model.ThingEntity;
+import microservice.repository.LuceneRepositoryCustom;
+import microservice.repository.ThingChangeObserver;
+
+/**
+ * Applies the changes made to things to the search index asynchronously, off the write path. Ids of the things
+ * changed wait in a bounded queue, where repeated changes to the same thing are coalesced, and are reindexed in
+ * batches by a single worker thread, one index commit per batch.
+ * <p>
+ * When the queue is full, committing threads wait for room; if there is still none after a while, the change is
+ * dropped and the queue marked for a rebuild instead: the worker then discards the changes queued and starts a full
+ * rebuild of the index, which covers them all. Committing threads never reindex anything themselves.
+ * <p>
+ * The worker is paused while the whole index is rebuilt: a batch applied while the rebuild reindexes the same things
+ * could otherwise be overwritten by the older state the rebuild read. Changes keep being queued meanwhile and are
+ * applied once the rebuild is over.
+ */
+@Component
+public class IndexingQueue implements ThingChangeObserver {
+
+	private static final Logger LOG = LoggerFactory.getLogger(IndexingQueue.class);
+
+	@Autowired
+	private LuceneRepositoryCustom<ThingEntity> searchRepo;
+
+	@Autowired
+	private ConfigProperties config;
+
+	/** Ids pending reindexing, in arrival order, with the nano time they were first queued at */
+	private final Map<Long, Long> pending = new LinkedHashMap<>();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final Condition drained = lock.newCondition();
+	private boolean processing;
+	private boolean paused;
+	private boolean rebuildRequired;
+	private Runnable rebuild;
+
+	private Thread worker;
+	private volatile boolean running;
+
+	private final AtomicLong queued = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong overflows = new AtomicLong();
+	private final AtomicLong indexed = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private volatile long lastBatchLagNanos;
+	private volatile long maxLagNanos;
+
+	@PostConstruct
+	public void start() {
+		running = true;
+		worker = new Thread(this::process, "indexing-queue");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Stops the worker once every change queued has been applied to the index.
+	 */
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		flush();
+		running = false;
+		worker.interrupt();
+		worker.join(TimeUnit.SECONDS.toMillis(10));
+	}
+
+	@Override
+	public void thingChanged(long id, String oldName, String newName) {
+		long now = System.nanoTime();
+		lock.lock();
+		try {
+			// A rebuild still to start reads the thing after this change was committed
+			if (pending.containsKey(id) || rebuildRequired) {
+				coalesced.incrementAndGet();
+				return;
+			}
+			long waitNanos = TimeUnit.MILLISECONDS.toNanos(config.getIndexingOfferTimeoutMillis());
+			try {
+				while (pending.size() >= config.getIndexingQueueCapacity() && waitNanos > 0)
+					waitNanos = notFull.awaitNanos(waitNanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (pending.size() < config.getIndexingQueueCapacity()) {
+				pending.put(id, now);
+				queued.incrementAndGet();
+				notEmpty.signal();
+				return;
+			}
+			overflows.incrementAndGet();
+			rebuildRequired = true;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param rebuild Starts a full rebuild of the index, run when changes had to be dropped; throws
+	 * {@link ReindexInProgressException} if one is already running
+	 */
+	public void setRebuild(Runnable rebuild) {
+		this.rebuild = rebuild;
+	}
+
+	/**
+	 * @return Whether changes were dropped and are only waiting for a rebuild of the index to be in it
+	 */
+	public boolean isRebuildRequired() {
+		lock.lock();
+		try {
+			return rebuildRequired;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops applying changes, once the batch being applied (if any) is in the index; changes are still queued.
+	 */
+	public void pause() throws InterruptedException {
+		lock.lock();
+		try {
+			paused = true;
+			while (processing)
+				drained.await();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void resume() {
+		lock.lock();
+		try {
+			paused = false;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until every change queued so far has been applied to the index.
+	 */
+	public void flush() throws InterruptedException {
+		lock.lock();
+		try {
+			while (running && worker.isAlive() && (!pending.isEmpty() || processing))
+				drained.await(1, TimeUnit.SECONDS);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	//====================
+	// Metrics
+	//====================
+	public int getBacklog() {
+		lock.lock();
+		try {
+			return pending.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getCapacity() {
+		return config.getIndexingQueueCapacity();
+	}
+
+	/**
+	 * @return Milliseconds the oldest change still queued has been waiting for
+	 */
+	public long getOldestPendingMillis() {
+		lock.lock();
+		try {
+			return pending.isEmpty() ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pending.values().iterator().next());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Milliseconds between the oldest change of the last batch being queued and it being in the index
+	 */
+	public long getLastBatchLagMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(lastBatchLagNanos);
+	}
+
+	public long getMaxLagMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxLagNanos);
+	}
+
+	public long getQueued() {
+		return queued.get();
+	}
+
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+
+	public long getOverflows() {
+		return overflows.get();
+	}
+
+	public long getIndexed() {
+		return indexed.get();
+	}
+
+	public long getBatches() {
+		return batches.get();
+	}
+
+	public long getFailures() {
+		return failures.get();
+	}
+
+	//============
+	// Utilities
+	//============
+	private void process() {
+		while (running) {
+			List<Serializable> batch = new ArrayList<>();
+			long oldestNanos;
+			lock.lock();
+			try {
+				while ((pending.isEmpty() && !rebuildRequired) || paused)
+					notEmpty.await();
+				if (rebuildRequired) {
+					// The rebuild reads every thing after this point, so it covers all the changes queued
+					rebuildRequired = false;
+					pending.clear();
+					notFull.signalAll();
+					drained.signalAll();
+					lock.unlock();
+					try {
+						startRebuild();
+					} finally {
+						lock.lock();
+					}
+					continue;
+				}
+				// Give the batch some time to fill up, unless it is already full
+				long delayNanos = TimeUnit.MILLISECONDS.toNanos(config.getIndexingBatchDelayMillis());
+				while (pending.size() < config.getIndexingBatchSize() && delayNanos > 0)
+					delayNanos = notEmpty.awaitNanos(delayNanos);
+				if (paused)
+					continue;
+				oldestNanos = pending.values().iterator().next();
+				Iterator<Long> ids = pending.keySet().iterator();
+				while (ids.hasNext() && batch.size() < config.getIndexingBatchSize()) {
+					batch.add(ids.next());
+					ids.remove();
+				}
+				processing = true;
+				notFull.signalAll();
+			} catch (InterruptedException e) {
+				continue;
+			} finally {
+				lock.unlock();
+			}
+
+			try {
+				reindex(batch, oldestNanos);
+			} finally {
+				lock.lock();
+				try {
+					processing = false;
+					drained.signalAll();
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+	}
+
+	private void reindex(List<Serializable> ids, long oldestNanos) {
+		try {
+			indexed.addAndGet(searchRepo.reindex(ThingEntity.class, ids));
+			batches.incrementAndGet();
+			long lag = System.nanoTime() - oldestNanos;
+			lastBatchLagNanos = lag;
+			if (lag > maxLagNanos)
+				maxLagNanos = lag;
+		} catch (RuntimeException e) {
+			failures.incrementAndGet();
+			LOG.error("Could not reindex things " + ids + "; a search index rebuild will fix them", e);
+		}
+	}
+
+	/**
+	 * Starts the rebuild; if there is one already starting, waits a little for it to pause the queue and retries later.
+	 */
+	private void startRebuild() throws InterruptedException {
+		if (rebuild != null) {
+			try {
+				rebuild.run();
+				LOG.warn("Indexing queue overflowed, rebuilding the search index");
+				return;
+			} catch (ReindexInProgressException e) {
+				// Retried below
+			}
+		}
+		lock.lock();
+		try {
+			rebuildRequired = true;
+		} finally {
+			lock.unlock();
+		}
+		Thread.sleep(config.getIndexingBatchDelayMillis());
+	}
+}
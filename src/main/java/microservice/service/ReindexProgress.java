@@ -0,0 +1,115 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.service;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Progress of a search index rebuild, updated concurrently by the threads reindexing and read by whoever polls it.
+ */
+public class ReindexProgress {
+
+	public enum State { RUNNING, COMPLETED, CANCELLED, FAILED }
+
+	private final Instant startedOn = Instant.now();
+	private final long startNanos = System.nanoTime();
+	private volatile long elapsedNanos = -1;
+	private volatile long total;
+	private final AtomicLong indexed = new AtomicLong();
+	private final AtomicReference<State> state = new AtomicReference<>(State.RUNNING);
+	private volatile String failure;
+
+	void setTotal(long total) {
+		this.total = total;
+	}
+
+	void addIndexed(int entities) {
+		indexed.addAndGet(entities);
+	}
+
+	boolean cancel() {
+		return state.compareAndSet(State.RUNNING, State.CANCELLED);
+	}
+
+	void fail(Throwable cause) {
+		if (state.compareAndSet(State.RUNNING, State.FAILED))
+			failure = cause.toString();
+	}
+
+	void complete() {
+		elapsedNanos = System.nanoTime() - startNanos;
+		state.compareAndSet(State.RUNNING, State.COMPLETED);
+	}
+
+	/**
+	 * @return Whether batches are still being taken. A cancelled or failed rebuild may still be finishing the batches
+	 * in flight until {@link #isDone()}
+	 */
+	public boolean isRunning() {
+		return state.get() == State.RUNNING;
+	}
+
+	public boolean isDone() {
+		return elapsedNanos >= 0;
+	}
+
+	public State getState() {
+		return state.get();
+	}
+
+	public Instant getStartedOn() {
+		return startedOn;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public long getIndexed() {
+		return indexed.get();
+	}
+
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(getElapsedNanos());
+	}
+
+	public double getEntitiesPerSecond() {
+		long elapsed = getElapsedNanos();
+		return (elapsed == 0) ? 0 : getIndexed() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+	}
+
+	/**
+	 * @return Estimated seconds left at the current rate, or null when not running or not estimable yet
+	 */
+	public Long getEtaSeconds() {
+		double rate = getEntitiesPerSecond();
+		if (!isRunning() || rate == 0)
+			return null;
+		return Math.round(Math.max(0, total - getIndexed()) / rate);
+	}
+
+	public String getFailure() {
+		return failure;
+	}
+
+	private long getElapsedNanos() {
+		return isDone() ? elapsedNanos : System.nanoTime() - startNanos;
+	}
+}
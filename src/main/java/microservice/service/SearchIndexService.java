@@ -0,0 +1,44 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.service;
+
+/**
+ * Maintenance of the full text search index.
+ */
+public interface SearchIndexService {
+
+	/**
+	 * Starts rebuilding the search index in the background. Documents are replaced in place, so searches keep being
+	 * served from the current index while the rebuild runs.
+	 *
+	 * @return Progress of the rebuild just started
+	 * @throws ReindexInProgressException If a previous rebuild has not finished yet
+	 */
+	ReindexProgress startReindex();
+
+	/**
+	 * @return Progress of the current or last rebuild, or null if none has been started
+	 */
+	ReindexProgress getReindexProgress();
+
+	/**
+	 * Stops the current rebuild from taking more batches; the ones in flight are completed.
+	 *
+	 * @return Progress of the current or last rebuild, or null if none has been started
+	 */
+	ReindexProgress cancelReindex();
+}
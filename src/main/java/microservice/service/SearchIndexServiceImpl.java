@@ -0,0 +1,271 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import microservice.ConfigProperties;
+import microservice.model.ThingEntity;
+import microservice.model.ThingQueryParameters;
+import microservice.model.ThingWatermark;
+import microservice.repository.LuceneRepositoryCustom;
+import microservice.repository.ThingRepository;
+
+/**
+ * Rebuilds the search index with a coordinator thread, which scrolls the ids of all the things, and a pool of
+ * workers, each one reindexing a batch of them in its own transaction. Batches handed to the workers are bounded, so
+ * neither ids nor entities pile up in memory whatever the size of the table.
+ * <p>
+ * The index is kept on disk across restarts. On a clean shutdown the watermark of the things indexed is written next
+ * to it; on startup only the things modified since are reindexed, unless the watermark is missing (first start or
+ * crash) or the number of documents in the index does not match the number of things, which trigger a full rebuild.
+ */
+@Service
+public class SearchIndexServiceImpl implements SearchIndexService {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SearchIndexServiceImpl.class);
+
+	private static final String WATERMARK_COUNT = "count";
+	private static final String WATERMARK_LAST_MODIFIED = "lastModified";
+
+	@Autowired
+	private LuceneRepositoryCustom<ThingEntity> searchRepo;
+
+	@Autowired
+	private ThingRepository repo;
+
+	@Autowired
+	private IndexingQueue indexingQueue;
+
+	@Autowired
+	private ConfigProperties config;
+
+	private final ExecutorService coordinator = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("reindex-"));
+
+	private volatile ReindexProgress progress;
+
+	/**
+	 * Rebuilds are also started by the indexing queue when it had to drop changes; documents of things deleted
+	 * meanwhile are purged.
+	 */
+	@PostConstruct
+	public void registerRebuild() {
+		indexingQueue.setRebuild(() -> startReindex(true));
+	}
+
+	@Override
+	public ReindexProgress startReindex() {
+		return startReindex(false);
+	}
+
+	@Override
+	public ReindexProgress getReindexProgress() {
+		return progress;
+	}
+
+	@Override
+	public ReindexProgress cancelReindex() {
+		ReindexProgress result = progress;
+		if (result != null && result.cancel())
+			LOG.info("Search index rebuild cancelled after {} entities", result.getIndexed());
+		return result;
+	}
+
+	/**
+	 * Brings the index up to date with the database once the application is ready to serve. The watermark is removed
+	 * right after being read, so that it only survives until the next start if the service shuts down cleanly.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void synchronizeIndex() {
+		ThingWatermark watermark = readWatermark();
+		if (watermark == null) {
+			LOG.info("No search index watermark found, rebuilding the search index");
+			startReindex(true);
+			return;
+		}
+
+		deleteWatermark();
+		long reindexed;
+		try {
+			indexingQueue.pause();
+			reindexed = searchRepo.scrollIds(ThingEntity.class, "modifiedOn", watermark.getLastModified(),
+					config.getReindexFetchSize(), config.getReindexBatchSize(), ids -> searchRepo.reindex(ThingEntity.class, ids) > 0);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} finally {
+			indexingQueue.resume();
+		}
+		long entities = searchRepo.countEntities(ThingEntity.class);
+		long documents = searchRepo.countIndexed(ThingEntity.class);
+		if (entities != documents) {
+			LOG.info("Search index holds {} documents for {} entities, rebuilding it", documents, entities);
+			startReindex(true);
+		} else {
+			LOG.info("Search index synchronized: {} entities modified since {} reindexed", reindexed, watermark.getLastModified());
+		}
+	}
+
+	/**
+	 * Writes the watermark of the index once the changes queued have been applied to it, unless a rebuild did not
+	 * complete or is still required by the indexing queue (in which case it will be rebuilt on the next start).
+	 */
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		cancelReindex();
+		coordinator.shutdownNow();
+		indexingQueue.flush();
+		ReindexProgress last = progress;
+		if ((last == null || last.getState() == ReindexProgress.State.COMPLETED) && !indexingQueue.isRebuildRequired())
+			writeWatermark(repo.findWatermark(new ThingQueryParameters()));
+	}
+
+	//============
+	// Utilities
+	//============
+	private synchronized ReindexProgress startReindex(boolean purgeOrphans) {
+		if (progress != null && !progress.isDone())
+			throw new ReindexInProgressException(progress);
+		ReindexProgress result = new ReindexProgress();
+		progress = result;
+		coordinator.execute(() -> reindex(result, purgeOrphans));
+		return result;
+	}
+
+	/**
+	 * Reindexes every entity in place, so searches keep being served from the index, complete, all along the rebuild.
+	 * The indexing queue is paused meanwhile, so that the changes it applies are never overwritten by older ones.
+	 *
+	 * @param purgeOrphans Whether to purge afterwards the documents of entities no longer in the database, which
+	 * reindexing the entities that exist does not get rid of
+	 */
+	private void reindex(ReindexProgress progress, boolean purgeOrphans) {
+		int threads = config.getReindexThreads();
+		ExecutorService workers = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("reindex-worker-"));
+		Semaphore batchesInFlight = new Semaphore(threads * 2);
+		try {
+			indexingQueue.pause();
+			progress.setTotal(searchRepo.countEntities(ThingEntity.class));
+			searchRepo.scrollIds(ThingEntity.class, config.getReindexFetchSize(), config.getReindexBatchSize(), ids -> {
+				batchesInFlight.acquireUninterruptibly();
+				if (!progress.isRunning()) {
+					batchesInFlight.release();
+					return false;
+				}
+				workers.execute(() -> {
+					try {
+						if (progress.isRunning())
+							progress.addIndexed(searchRepo.reindex(ThingEntity.class, ids));
+					} catch (RuntimeException e) {
+						LOG.error("Search index rebuild failed", e);
+						progress.fail(e);
+					} finally {
+						batchesInFlight.release();
+					}
+				});
+				return true;
+			});
+			workers.shutdown();
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			if (purgeOrphans && progress.isRunning()) {
+				long orphans = searchRepo.scrollOrphanIds(ThingEntity.class, config.getReindexBatchSize(),
+						ids -> progress.isRunning() && searchRepo.reindex(ThingEntity.class, ids) > 0);
+				LOG.info("Search index rebuild purged {} documents of things no longer in the database", orphans);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			progress.fail(e);
+		} catch (RuntimeException e) {
+			LOG.error("Search index rebuild failed", e);
+			progress.fail(e);
+		} finally {
+			workers.shutdownNow();
+			indexingQueue.resume();
+			progress.complete();
+			LOG.info("Search index rebuild {}: {} of {} entities in {} ms",
+					progress.getState(), progress.getIndexed(), progress.getTotal(), progress.getElapsedMillis());
+		}
+	}
+
+	private ThingWatermark readWatermark() {
+		Path file = getWatermarkFile();
+		if (!Files.exists(file))
+			return null;
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			properties.load(in);
+			String lastModified = properties.getProperty(WATERMARK_LAST_MODIFIED);
+			return new ThingWatermark(
+					Long.valueOf(properties.getProperty(WATERMARK_COUNT)),
+					null,
+					(lastModified == null) ? null : Instant.parse(lastModified));
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Unreadable search index watermark " + file, e);
+			return null;
+		}
+	}
+
+	private void writeWatermark(ThingWatermark watermark) {
+		Path file = getWatermarkFile();
+		Properties properties = new Properties();
+		properties.setProperty(WATERMARK_COUNT, String.valueOf(watermark.getCount()));
+		if (watermark.getLastModified() != null)
+			properties.setProperty(WATERMARK_LAST_MODIFIED, watermark.getLastModified().toString());
+		try {
+			Files.createDirectories(file.getParent());
+			try (OutputStream out = Files.newOutputStream(file)) {
+				properties.store(out, "Last things indexed");
+			}
+		} catch (IOException e) {
+			LOG.warn("Could not write search index watermark " + file, e);
+		}
+	}
+
+	private void deleteWatermark() {
+		try {
+			Files.deleteIfExists(getWatermarkFile());
+		} catch (IOException e) {
+			LOG.warn("Could not delete search index watermark", e);
+		}
+	}
+
+	private Path getWatermarkFile() {
+		return Paths.get(config.getIndexBase(), ThingEntity.class.getName() + ".watermark");
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical calls into one: the first caller for a key runs the call, and those arriving while
+ * it is in flight wait for it and share its result, or its failure. Nothing is kept once the call completes, so
+ * results are never stale.
+ *
+ * @param <KEY_T> Type of the keys identifying identical calls; they must implement {@code equals} and
+ * {@code hashCode}
+ */
+public class SingleFlight<KEY_T> {
+
+	private final String name;
+	private final ConcurrentMap<KEY_T, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+	private final AtomicLong executed = new AtomicLong();
+	private final AtomicLong collapsed = new AtomicLong();
+
+	public SingleFlight(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param key Key of the call
+	 * @param call Call to run, unless an identical one is in flight. Its result is shared: it must not be modified.
+	 * @return Result of the call, or of the identical one in flight
+	 */
+	@SuppressWarnings("unchecked")
+	public <RESULT_T> RESULT_T execute(KEY_T key, Supplier<RESULT_T> call) {
+		CompletableFuture<Object> ours = new CompletableFuture<>();
+		CompletableFuture<Object> theirs = inFlight.putIfAbsent(key, ours);
+		if (theirs != null) {
+			collapsed.incrementAndGet();
+			try {
+				return (RESULT_T) theirs.join();
+			} catch (CompletionException e) {
+				throw rethrow(e.getCause());
+			}
+		}
+
+		executed.incrementAndGet();
+		try {
+			RESULT_T result = call.get();
+			ours.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			ours.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, ours);
+		}
+	}
+
+	//================================
+	// Metrics
+	//================================
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return Calls actually run
+	 */
+	public long getExecuted() {
+		return executed.get();
+	}
+
+	/**
+	 * @return Calls which shared the result of an identical one in flight instead of running
+	 */
+	public long getCollapsed() {
+		return collapsed.get();
+	}
+
+	public int getInFlight() {
+		return inFlight.size();
+	}
+
+	//============
+	// Utilities
+	//============
+	private static RuntimeException rethrow(Throwable cause) {
+		if (cause instanceof Error)
+			throw (Error) cause;
+		return (cause instanceof RuntimeException) ? (RuntimeException) cause : new CompletionException(cause);
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import microservice.model.ThingQueryParameters;
+import microservice.repository.ThingChangeObserver;
+import microservice.repository.ThingRepository;
+
+/**
+ * In-memory, case insensitive prefix suggester of thing names. Names are kept sorted in a skip list, so the names
+ * starting with a prefix are a contiguous range found in logarithmic time, without touching the database.
+ * <p>
+ * It is loaded when the application starts and kept up to date with the things the repository creates, renames
+ * and deletes, as relayed by {@link microservice.repository.ThingChangeListener} after commit. Note that
+ * {@code DELETE /things/{id}} does not delete anything yet, so only deletions made through the repository apply.
+ */
+@Component
+public class ThingNameSuggester implements ThingChangeObserver {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ThingNameSuggester.class);
+
+	/** Separates the case folded name from the original one in the keys, sorting before any other character */
+	private static final char KEY_SEPARATOR = '\0';
+
+	@Autowired
+	private ThingRepository repo;
+
+	/** Names by case folded name followed by the name itself (names differing only in case do not collide) */
+	private final ConcurrentNavigableMap<String, String> names = new ConcurrentSkipListMap<>();
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		long loaded = repo.scrollMatching(new ThingQueryParameters(), entity -> add(entity.getName()));
+		LOG.info("Name suggester loaded with {} things", loaded);
+	}
+
+	@Override
+	public void thingChanged(long id, String oldName, String newName) {
+		if (oldName != null && !oldName.equals(newName))
+			names.remove(toKey(oldName));
+		add(newName);
+	}
+
+	/**
+	 * @param prefix Beginning of the names to suggest, regardless of case
+	 * @param size Maximum number of names to suggest
+	 * @return Names starting with the prefix, in alphabetical order
+	 */
+	public List<String> suggest(String prefix, int size) {
+		String from = fold(prefix);
+		return names.subMap(from, true, from + Character.MAX_VALUE, false).values().stream()
+				.limit(size)
+				.collect(Collectors.toList());
+	}
+
+	//============
+	// Utilities
+	//============
+	private void add(String name) {
+		if (name != null)
+			names.put(toKey(name), name);
+	}
+
+	private static String toKey(String name) {
+		return fold(name) + KEY_SEPARATOR + name;
+	}
+
+	private static String fold(String text) {
+		return text.toLowerCase(Locale.ROOT);
+	}
+}
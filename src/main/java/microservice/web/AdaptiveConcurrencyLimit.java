@@ -0,0 +1,142 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit adapting to the measured latency, after the gradient algorithm: while the latency of requests
+ * stays close to the one without load (the lowest seen) the limit grows by about its square root, room for some
+ * queueing; as latency rises above it, the limit shrinks proportionally, down to half per sample. The latency
+ * without load slowly drifts towards the one measured, so that the limit recovers if the service got slower for
+ * good.
+ */
+public class AdaptiveConcurrencyLimit {
+
+	/** How much the latency may exceed the one without load before the limit shrinks */
+	private static final double TOLERANCE = 2;
+
+	/** Weight of each new limit computed in the limit applied */
+	private static final double SMOOTHING = 0.2;
+
+	/** Samples over which the latency without load drifts to the one measured */
+	private static final int DRIFT_WINDOW = 10000;
+
+	private final String name;
+	private final int minLimit;
+	private final int maxLimit;
+
+	private volatile double limit;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private double noLoadRttNanos;
+	private volatile long lastRttNanos;
+	private final AtomicLong accepted = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	public AdaptiveConcurrencyLimit(String name, int initialLimit, int minLimit, int maxLimit) {
+		this.name = name;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+	}
+
+	/**
+	 * @return Limit which does not adapt
+	 */
+	public static AdaptiveConcurrencyLimit fixed(String name, int limit) {
+		return new AdaptiveConcurrencyLimit(name, limit, limit, limit);
+	}
+
+	/**
+	 * @return Whether the request can proceed, in which case {@link #release} must be called once it is done
+	 */
+	public boolean tryAcquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (current >= (int) limit) {
+				rejected.incrementAndGet();
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				accepted.incrementAndGet();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @param rttNanos How long the request took
+	 */
+	public void release(long rttNanos) {
+		int inFlightBefore = inFlight.getAndDecrement();
+		update(Math.max(1, rttNanos), inFlightBefore);
+	}
+
+	/**
+	 * Releases a request whose latency is not to be sampled, as it says nothing about the load.
+	 */
+	public void release() {
+		inFlight.decrementAndGet();
+	}
+
+	private synchronized void update(long rttNanos, int inFlightBefore) {
+		lastRttNanos = rttNanos;
+		noLoadRttNanos = (noLoadRttNanos == 0 || rttNanos < noLoadRttNanos) ? rttNanos
+				: noLoadRttNanos + (rttNanos - noLoadRttNanos) / DRIFT_WINDOW;
+		// With so few requests in flight the latency says nothing about the limit
+		if (inFlightBefore < limit / 2)
+			return;
+
+		double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * noLoadRttNanos / rttNanos));
+		double newLimit = limit * gradient + Math.sqrt(limit);
+		newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+		limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+	}
+
+	//================================
+	// Metrics
+	//================================
+	public String getName() {
+		return name;
+	}
+
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	public long getAccepted() {
+		return accepted.get();
+	}
+
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	public synchronized long getNoLoadRttMillis() {
+		return TimeUnit.NANOSECONDS.toMillis((long) noLoadRttNanos);
+	}
+
+	public long getLastRttMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(lastRttNanos);
+	}
+}
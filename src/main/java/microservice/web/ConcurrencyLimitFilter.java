@@ -0,0 +1,172 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+/**
+ * Sheds load before it queues: requests beyond the concurrency limit of their kind are answered straight away with
+ * 503 and {@code Retry-After}. Expensive requests, streaming ones and all the others (listed by method and path, see
+ * {@link #key}) have separate limits, so that a surge of some does not starve the others.
+ * <p>
+ * Only the latencies of successful requests (2xx, so not 304 either) are sampled by the limits: those of errors and
+ * of requests answered without doing the work say nothing about load. Streaming requests last as long as what they
+ * stream is large, so their limit should be fixed, and they are never sampled.
+ * <p>
+ * Asynchronous requests hold their slot until they complete, not just until their handler returns.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+	private final AdaptiveConcurrencyLimit cheapLimit;
+	private final AdaptiveConcurrencyLimit expensiveLimit;
+	private final AdaptiveConcurrencyLimit streamingLimit;
+	private final Set<String> expensiveRequests;
+	private final Set<String> streamingRequests;
+	private final long retryAfterSeconds;
+	private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+	/**
+	 * @param expensiveRequests Keys of the expensive requests
+	 * @param streamingRequests Keys of the streaming requests
+	 */
+	public ConcurrencyLimitFilter(AdaptiveConcurrencyLimit cheapLimit, AdaptiveConcurrencyLimit expensiveLimit, AdaptiveConcurrencyLimit streamingLimit,
+			Set<String> expensiveRequests, Set<String> streamingRequests, long retryAfterSeconds) {
+		this.cheapLimit = cheapLimit;
+		this.expensiveLimit = expensiveLimit;
+		this.streamingLimit = streamingLimit;
+		this.expensiveRequests = expensiveRequests;
+		this.streamingRequests = streamingRequests;
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * @param path Path within the application
+	 * @return Key of the requests with the given method and path, e.g. {@code GET /things}
+	 */
+	public static String key(HttpMethod method, String path) {
+		return method.name() + " " + path;
+	}
+
+	public AdaptiveConcurrencyLimit getCheapLimit() {
+		return cheapLimit;
+	}
+
+	public AdaptiveConcurrencyLimit getExpensiveLimit() {
+		return expensiveLimit;
+	}
+
+	public AdaptiveConcurrencyLimit getStreamingLimit() {
+		return streamingLimit;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		String key = key(request);
+		boolean streaming = streamingRequests.contains(key);
+		AdaptiveConcurrencyLimit limit = streaming ? streamingLimit : expensiveRequests.contains(key) ? expensiveLimit : cheapLimit;
+		if (!limit.tryAcquire()) {
+			response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+			response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+			return;
+		}
+
+		long startedOn = System.nanoTime();
+		boolean async = false;
+		try {
+			filterChain.doFilter(request, response);
+			if (request.isAsyncStarted()) {
+				request.getAsyncContext().addListener(new ReleasingListener(limit, !streaming, startedOn));
+				async = true;
+			}
+		} finally {
+			if (!async)
+				release(limit, !streaming && isSuccessful(response), startedOn);
+		}
+	}
+
+	//============
+	// Utilities
+	//============
+	private String key(HttpServletRequest request) {
+		return request.getMethod() + " " + urlPathHelper.getPathWithinApplication(request);
+	}
+
+	/**
+	 * Whether the request was answered in full: errors and 304s are not.
+	 */
+	private static boolean isSuccessful(HttpServletResponse response) {
+		return HttpStatus.Series.valueOf(response.getStatus()) == HttpStatus.Series.SUCCESSFUL;
+	}
+
+	private static void release(AdaptiveConcurrencyLimit limit, boolean sampled, long startedOn) {
+		if (sampled)
+			limit.release(System.nanoTime() - startedOn);
+		else
+			limit.release();
+	}
+
+	/**
+	 * Releases the slot of an asynchronous request once it completes, whether it timed out or failed before.
+	 */
+	private static class ReleasingListener implements AsyncListener {
+
+		private final AdaptiveConcurrencyLimit limit;
+		private final boolean sampled;
+		private final long startedOn;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		ReleasingListener(AdaptiveConcurrencyLimit limit, boolean sampled, long startedOn) {
+			this.limit = limit;
+			this.sampled = sampled;
+			this.startedOn = startedOn;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			if (released.compareAndSet(false, true))
+				release(limit, sampled && isSuccessful((HttpServletResponse) event.getSuppliedResponse()), startedOn);
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+		}
+	}
+}
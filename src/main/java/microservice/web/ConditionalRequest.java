@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Validators sent with a GET request ({@code If-None-Match} and {@code If-Modified-Since}) and what identifies its
+ * representation, read from the request up front. Work running off the container thread evaluates them against the
+ * state of the resource without touching the request, which may be recycled by then, and answers with the
+ * validators (or a 304) in the {@link ResponseEntity} it returns.
+ */
+public final class ConditionalRequest {
+
+	private final String representation;
+	private final List<String> ifNoneMatch;
+	private final long ifModifiedSince;
+
+	private ConditionalRequest(String representation, List<String> ifNoneMatch, long ifModifiedSince) {
+		this.representation = representation;
+		this.ifNoneMatch = ifNoneMatch;
+		this.ifModifiedSince = ifModifiedSince;
+	}
+
+	/**
+	 * Reads the validators of the request, along with its URI, query string and {@code Accept} header, which make up
+	 * its representation. Must be called on the container thread.
+	 */
+	public static ConditionalRequest of(HttpServletRequest request) {
+		String representation = new StringBuilder(request.getRequestURI())
+				.append('?').append(request.getQueryString())
+				.append('|').append(request.getHeader(HttpHeaders.ACCEPT))
+				.toString();
+		List<String> ifNoneMatch = new ArrayList<>();
+		for (String header : Collections.list(request.getHeaders(HttpHeaders.IF_NONE_MATCH)))
+			for (String eTag : header.split(","))
+				if (!eTag.trim().isEmpty())
+					ifNoneMatch.add(stripWeak(eTag.trim()));
+		return new ConditionalRequest(representation, ifNoneMatch, parseDate(request, HttpHeaders.IF_MODIFIED_SINCE));
+	}
+
+	/**
+	 * Whether the client holds a representation previously obtained, to be validated.
+	 */
+	public boolean isConditional() {
+		return !ifNoneMatch.isEmpty() || ifModifiedSince >= 0;
+	}
+
+	/**
+	 * Validates the representation of the resource in the given state. The strong ETag is a digest of the
+	 * representation and of the state; {@code If-None-Match} takes precedence over {@code If-Modified-Since}.
+	 *
+	 * @param lastModified Last time the resource changed. Can be null.
+	 * @param state Values which change whenever the resource changes
+	 */
+	public Validators validate(Instant lastModified, Object... state) {
+		StringBuilder key = new StringBuilder(representation);
+		for (Object value : state)
+			key.append('|').append(value);
+		String eTag = '"' + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + '"';
+		long lastModifiedMillis = (lastModified == null) ? -1 : lastModified.toEpochMilli();
+
+		boolean notModified;
+		if (!ifNoneMatch.isEmpty())
+			notModified = ifNoneMatch.contains(eTag) || ifNoneMatch.contains("*");
+		else
+			notModified = lastModifiedMillis >= 0 && ifModifiedSince >= (lastModifiedMillis / 1000 * 1000);
+		return new Validators(eTag, lastModifiedMillis, notModified);
+	}
+
+	//============
+	// Utilities
+	//============
+	private static String stripWeak(String eTag) {
+		return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+	}
+
+	private static long parseDate(HttpServletRequest request, String header) {
+		try {
+			return request.getDateHeader(header);
+		} catch (IllegalArgumentException e) {
+			return -1; // Ignored, as if it were not sent
+		}
+	}
+
+	/**
+	 * Validators of a representation, and whether the one held by the client is current.
+	 */
+	public static final class Validators {
+
+		private final String eTag;
+		private final long lastModified;
+		private final boolean notModified;
+
+		private Validators(String eTag, long lastModified, boolean notModified) {
+			this.eTag = eTag;
+			this.lastModified = lastModified;
+			this.notModified = notModified;
+		}
+
+		public String getETag() {
+			return eTag;
+		}
+
+		public boolean isNotModified() {
+			return notModified;
+		}
+
+		/**
+		 * @return Builder of a response with the ETag and Last-Modified headers set, and a status of
+		 * {@link HttpStatus#NOT_MODIFIED} if the representation held by the client is current or
+		 * {@link HttpStatus#OK} otherwise
+		 */
+		public ResponseEntity.BodyBuilder response() {
+			ResponseEntity.BodyBuilder builder = ResponseEntity.status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK).eTag(eTag);
+			if (lastModified >= 0)
+				builder.lastModified(lastModified);
+			return builder;
+		}
+	}
+}
@@ -16,25 +16,19 @@
 
 package microservice.web;
 
-import java.util.Collection;
-import java.util.List;
-import java.util.stream.Collectors;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
 
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.Pageable;
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidSortException extends RuntimeException {
 
-public class PageOfCollection<T> extends PageImpl<T> {
+	private static final long serialVersionUID = 2741360581947205513L;
 
-	private static final long serialVersionUID = 3587907037872779493L;
-
-	private static <T> List<T> getPage(Collection<T> collection, Pageable page) {
-		return collection.stream()
-				.skip(page.getOffset())
-				.limit(page.getPageSize())
-				.collect(Collectors.toList());
+	public InvalidSortException(String property) {
+		super(String.format("Things can not be sorted by property [%s]", property));
 	}
 
-	public PageOfCollection(Collection<T> content, Pageable page) {
-		super(getPage(content, page), page, content.size());
+	public InvalidSortException(String property, String reason) {
+		super(String.format("Things can not be sorted by property [%s]: %s", property, reason));
 	}
 }
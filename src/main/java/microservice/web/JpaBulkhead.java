@@ -0,0 +1,236 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import microservice.ConfigProperties;
+import microservice.VirtualThreads;
+
+/**
+ * Runs the blocking JPA work of web requests on a bounded pool of its own, sized to the connection pool, so that
+ * container threads are released while requests wait for the database. Work beyond the capacity of the queue is
+ * rejected straight away with 503, before it runs. Reads not done within the timeout of their endpoint are answered
+ * with 503 too; writes have no timeout of their own (only the container's, {@code spring.mvc.async.request-timeout},
+ * as a last resort), so that a client is never told a write failed once it may have been committed, and could not
+ * duplicate it by retrying.
+ * <p>
+ * Work must not touch the request, nor the response: the container may recycle them as soon as the request is
+ * answered (e.g. on timeout), while the work goes on. Whatever it needs from them is read before submitting it (see
+ * {@link ConditionalRequest} and {@link microservice.web.resource.LinkUtils#getBaseUri(Class)}), and headers are
+ * returned within its {@link org.springframework.http.ResponseEntity}. Results of work done after its request was
+ * answered are dropped. Streaming work is the exception (see {@link #submitStreaming}).
+ */
+@Component
+public class JpaBulkhead {
+
+	@Autowired
+	private ConfigProperties config;
+
+	private ThreadPoolExecutor executor;
+
+	private final ConcurrentMap<String, EndpointStats> statsByEndpoint = new ConcurrentHashMap<>();
+
+	@PostConstruct
+	public void start() {
+		int threads = config.getJpaExecutorThreads();
+		ThreadFactory threadFactory;
+		if (config.isVirtualThreads()) {
+			// Still as many as connections: what is bounded is the database work, not the threads
+			VirtualThreads.tracePinnedThreads(config.getTracePinnedThreads());
+			threadFactory = VirtualThreads.newThreadFactory("jpa-");
+		} else {
+			threadFactory = new CustomizableThreadFactory("jpa-");
+		}
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(config.getJpaExecutorQueueCapacity()), threadFactory);
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Submits read-only work, answered with 503 if not done within the timeout of its endpoint.
+	 *
+	 * @param endpoint Name of the endpoint, for its timeout and statistics
+	 * @param work Blocking work to run on the pool
+	 * @return Result of the work, set once done
+	 * @throws BulkheadFullException If the queue of the pool is full
+	 */
+	public <RESULT_T> DeferredResult<RESULT_T> submit(String endpoint, Callable<RESULT_T> work) {
+		return submit(endpoint, work, config.getAsyncTimeoutMillis(endpoint));
+	}
+
+	/**
+	 * Submits work which writes, run to completion once started whatever the time it takes.
+	 *
+	 * @param endpoint Name of the endpoint, for its statistics
+	 * @param work Blocking work to run on the pool
+	 * @return Result of the work, set once done
+	 * @throws BulkheadFullException If the queue of the pool is full, in which case nothing was written
+	 */
+	public <RESULT_T> DeferredResult<RESULT_T> submitWrite(String endpoint, Callable<RESULT_T> work) {
+		return submit(endpoint, work, null);
+	}
+
+	/**
+	 * Submits read-only work which writes the response itself, as it goes, rather than returning it. The response
+	 * stays open until the work is done, unless it is not done within the timeout of its endpoint, which should then
+	 * be long enough for the largest responses.
+	 *
+	 * @param endpoint Name of the endpoint, for its timeout and statistics
+	 * @param work Blocking work to run on the pool, writing the response
+	 * @return Set once the response is written
+	 * @throws BulkheadFullException If the queue of the pool is full, in which case nothing was written
+	 */
+	public DeferredResult<Void> submitStreaming(String endpoint, Callable<Void> work) {
+		return submit(endpoint, work, config.getAsyncTimeoutMillis(endpoint));
+	}
+
+	//============
+	// Utilities
+	//============
+	private <RESULT_T> DeferredResult<RESULT_T> submit(String endpoint, Callable<RESULT_T> work, Long timeoutMillis) {
+		EndpointStats stats = statsByEndpoint.computeIfAbsent(endpoint, name -> new EndpointStats());
+		DeferredResult<RESULT_T> result = new DeferredResult<>(timeoutMillis);
+		long submittedOn = System.nanoTime();
+
+		Future<?> future;
+		try {
+			future = executor.submit(() -> {
+				stats.waited(System.nanoTime() - submittedOn);
+				if (result.isSetOrExpired())
+					return;
+				boolean set;
+				try {
+					set = result.setResult(work.call());
+				} catch (Throwable e) {
+					stats.failures.incrementAndGet();
+					set = result.setErrorResult(e);
+				}
+				if (!set)
+					stats.dropped.incrementAndGet();
+			});
+		} catch (RejectedExecutionException e) {
+			stats.rejections.incrementAndGet();
+			throw new BulkheadFullException(endpoint, config.getJpaExecutorQueueCapacity());
+		}
+		stats.submissions.incrementAndGet();
+
+		// Without a result, Spring answers timed out requests with 503
+		result.onTimeout(() -> {
+			stats.timeouts.incrementAndGet();
+			future.cancel(false);
+		});
+		return result;
+	}
+
+	//================================
+	// Metrics
+	//================================
+	public int getThreads() {
+		return executor.getMaximumPoolSize();
+	}
+
+	public int getActive() {
+		return executor.getActiveCount();
+	}
+
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	public int getQueueCapacity() {
+		return config.getJpaExecutorQueueCapacity();
+	}
+
+	public long getCompleted() {
+		return executor.getCompletedTaskCount();
+	}
+
+	public Map<String, EndpointStats> getStatsByEndpoint() {
+		return statsByEndpoint;
+	}
+
+	/**
+	 * Counters of the work submitted by an endpoint.
+	 */
+	public static class EndpointStats {
+
+		private final AtomicLong submissions = new AtomicLong();
+		private final AtomicLong rejections = new AtomicLong();
+		private final AtomicLong timeouts = new AtomicLong();
+		private final AtomicLong failures = new AtomicLong();
+		private final AtomicLong dropped = new AtomicLong();
+		private final AtomicLong maxWaitNanos = new AtomicLong();
+
+		private void waited(long nanos) {
+			maxWaitNanos.accumulateAndGet(nanos, Math::max);
+		}
+
+		public long getSubmissions() {
+			return submissions.get();
+		}
+
+		public long getRejections() {
+			return rejections.get();
+		}
+
+		public long getTimeouts() {
+			return timeouts.get();
+		}
+
+		public long getFailures() {
+			return failures.get();
+		}
+
+		/**
+		 * @return Results of work done after its request was answered, which were dropped
+		 */
+		public long getDropped() {
+			return dropped.get();
+		}
+
+		/**
+		 * @return Longest time work has waited in the queue before running
+		 */
+		public long getMaxWaitMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+		}
+	}
+}
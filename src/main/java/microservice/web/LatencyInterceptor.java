@@ -0,0 +1,69 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import microservice.metrics.LatencyMetrics;
+
+/**
+ * Records the latency of the requests handled by the given controller. The start is taken on the first dispatch and
+ * the latency recorded on completion of the last one, so asynchronous requests are timed end to end.
+ */
+public class LatencyInterceptor extends HandlerInterceptorAdapter {
+
+	private static final String STARTED_ON = LatencyInterceptor.class.getName() + ".startedOn";
+
+	private final LatencyMetrics metrics;
+	private final Class<?> controllerClass;
+	private final ConcurrentMap<HandlerMethod, LatencyMetrics.Timer> timers = new ConcurrentHashMap<>();
+
+	public LatencyInterceptor(LatencyMetrics metrics, Class<?> controllerClass) {
+		this.metrics = metrics;
+		this.controllerClass = controllerClass;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (isTimed(handler) && request.getAttribute(STARTED_ON) == null)
+			request.setAttribute(STARTED_ON, System.nanoTime());
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		Long startedOn = (Long) request.getAttribute(STARTED_ON);
+		if (startedOn == null || !isTimed(handler))
+			return;
+		long nanos = System.nanoTime() - startedOn;
+		HandlerMethod handlerMethod = (HandlerMethod) handler;
+		timers.computeIfAbsent(handlerMethod, method -> metrics.timer(LatencyMetrics.REQUESTS,
+				"handler=" + controllerClass.getSimpleName() + "." + method.getMethod().getName())).record(nanos);
+	}
+
+	private boolean isTimed(Object handler) {
+		return handler instanceof HandlerMethod && controllerClass.equals(((HandlerMethod) handler).getBeanType());
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import microservice.service.ReindexProgress;
+import microservice.service.SearchIndexService;
+
+/**
+ * Maintenance of the full text search index, meant for operators rather than for API clients.
+ */
+@RestController
+@RequestMapping(value = "/search-index", produces = MediaType.APPLICATION_JSON_VALUE)
+public class SearchIndexController {
+
+	@Autowired
+	private SearchIndexService service;
+
+	/**
+	 * Starts rebuilding the index in the background; poll {@code GET} on the same URI for its progress.
+	 */
+	@PostMapping("rebuild")
+	public ResponseEntity<ReindexProgress> startRebuild() {
+		return ResponseEntity.accepted().body(service.startReindex());
+	}
+
+	@GetMapping("rebuild")
+	public ResponseEntity<ReindexProgress> getRebuild() {
+		return createResponse(service.getReindexProgress());
+	}
+
+	@DeleteMapping("rebuild")
+	public ResponseEntity<ReindexProgress> cancelRebuild() {
+		return createResponse(service.cancelReindex());
+	}
+
+	//============
+	// Utilities
+	//============
+	private ResponseEntity<ReindexProgress> createResponse(ReindexProgress progress) {
+		return (progress == null) ? ResponseEntity.notFound().build() : ResponseEntity.ok(progress);
+	}
+}
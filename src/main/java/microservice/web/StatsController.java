@@ -0,0 +1,240 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.NaturalIdCacheStatistics;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import microservice.metrics.LatencyMetrics;
+import microservice.model.ThingEntity;
+import microservice.repository.QueryPlanCacheCounter;
+import microservice.repository.QueryTemplateCache;
+import microservice.service.AppService;
+import microservice.service.IndexingQueue;
+import microservice.service.SingleFlight;
+
+/**
+ * Runtime statistics of the service, meant for operators rather than for API clients.
+ */
+@RestController
+@RequestMapping(value = "/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+public class StatsController {
+
+	private static final String NATURAL_ID_REGION_SUFFIX = "##NaturalId";
+
+	@Autowired
+	private EntityManagerFactory emf;
+
+	@Autowired
+	private IndexingQueue indexingQueue;
+
+	@Autowired
+	private QueryTemplateCache templates;
+
+	@Autowired
+	private QueryPlanCacheCounter planCache;
+
+	@Autowired
+	private JpaBulkhead bulkhead;
+
+	@Autowired
+	private ConcurrencyLimitFilter concurrencyLimitFilter;
+
+	@Autowired
+	private AppService service;
+
+	@Autowired
+	private LatencyMetrics latencyMetrics;
+
+	/**
+	 * Hit/miss statistics of the second level cache regions of {@link ThingEntity}, by id and by natural id.
+	 */
+	@GetMapping("cache")
+	public Map<String, Object> cache() {
+		Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+		String region = ThingEntity.class.getName();
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("entity", toMap(stats.getSecondLevelCacheStatistics(region)));
+		result.put("naturalId", toMap(stats.getNaturalIdCacheStatistics(region + NATURAL_ID_REGION_SUFFIX)));
+		return result;
+	}
+
+	/**
+	 * Backlog and lag of the changes waiting to be applied to the search index.
+	 */
+	@GetMapping("indexing")
+	public Map<String, Object> indexing() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("backlog", indexingQueue.getBacklog());
+		result.put("capacity", indexingQueue.getCapacity());
+		result.put("oldestPendingMillis", indexingQueue.getOldestPendingMillis());
+		result.put("lastBatchLagMillis", indexingQueue.getLastBatchLagMillis());
+		result.put("maxLagMillis", indexingQueue.getMaxLagMillis());
+		result.put("queued", indexingQueue.getQueued());
+		result.put("coalesced", indexingQueue.getCoalesced());
+		result.put("overflows", indexingQueue.getOverflows());
+		result.put("rebuildRequired", indexingQueue.isRebuildRequired());
+		result.put("indexed", indexingQueue.getIndexed());
+		result.put("batches", indexingQueue.getBatches());
+		result.put("failures", indexingQueue.getFailures());
+		return result;
+	}
+
+	/**
+	 * Reuse of query templates and of the plans in the Hibernate query plan cache, and executions of the distinct
+	 * queries Hibernate has planned. Executions are only counted while {@code microservice.hibernate-statistics} is on.
+	 */
+	@GetMapping("queries")
+	public Map<String, Object> queries() {
+		Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+		Map<String, Object> result = new LinkedHashMap<>();
+		long hits = templates.getHits();
+		long misses = templates.getMisses();
+		Map<String, Object> templateStats = new LinkedHashMap<>();
+		templateStats.put("hits", hits);
+		templateStats.put("misses", misses);
+		templateStats.put("hitRatio", (hits + misses == 0) ? 0 : (double) hits / (hits + misses));
+		templateStats.put("size", templates.getSize());
+		templateStats.put("maxSize", QueryTemplateCache.MAX_TEMPLATES);
+		result.put("templates", templateStats);
+		hits = planCache.getHits();
+		misses = planCache.getMisses();
+		Map<String, Object> planStats = new LinkedHashMap<>();
+		planStats.put("counted", planCache.isInstalled());
+		planStats.put("hits", hits);
+		planStats.put("misses", misses);
+		planStats.put("hitRatio", (hits + misses == 0) ? 0 : (double) hits / (hits + misses));
+		result.put("plans", planStats);
+		result.put("statisticsEnabled", stats.isStatisticsEnabled());
+		result.put("queries", stats.getQueries().length);
+		result.put("executions", stats.getQueryExecutionCount());
+		result.put("maxExecutionMillis", stats.getQueryExecutionMaxTime());
+		result.put("slowestQuery", stats.getQueryExecutionMaxTimeQueryString());
+		return result;
+	}
+
+	/**
+	 * Load of the pool running the JPA work of web requests, and how each endpoint fared on it.
+	 */
+	@GetMapping("jpa")
+	public Map<String, Object> jpa() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("threads", bulkhead.getThreads());
+		result.put("active", bulkhead.getActive());
+		result.put("queueDepth", bulkhead.getQueueDepth());
+		result.put("queueCapacity", bulkhead.getQueueCapacity());
+		result.put("completed", bulkhead.getCompleted());
+		Map<String, Object> endpoints = new LinkedHashMap<>();
+		bulkhead.getStatsByEndpoint().forEach((endpoint, stats) -> {
+			Map<String, Object> endpointStats = new LinkedHashMap<>();
+			endpointStats.put("submissions", stats.getSubmissions());
+			endpointStats.put("rejections", stats.getRejections());
+			endpointStats.put("timeouts", stats.getTimeouts());
+			endpointStats.put("failures", stats.getFailures());
+			endpointStats.put("dropped", stats.getDropped());
+			endpointStats.put("maxWaitMillis", stats.getMaxWaitMillis());
+			endpoints.put(endpoint, endpointStats);
+		});
+		result.put("endpoints", endpoints);
+		return result;
+	}
+
+	/**
+	 * Concurrency limits of the requests to things, and how many were shed.
+	 */
+	@GetMapping("limits")
+	public Map<String, Object> limits() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		for (AdaptiveConcurrencyLimit limit : Arrays.asList(concurrencyLimitFilter.getCheapLimit(), concurrencyLimitFilter.getExpensiveLimit(), concurrencyLimitFilter.getStreamingLimit())) {
+			Map<String, Object> limitStats = new LinkedHashMap<>();
+			limitStats.put("limit", limit.getLimit());
+			limitStats.put("inFlight", limit.getInFlight());
+			limitStats.put("accepted", limit.getAccepted());
+			limitStats.put("rejected", limit.getRejected());
+			limitStats.put("noLoadRttMillis", limit.getNoLoadRttMillis());
+			limitStats.put("lastRttMillis", limit.getLastRttMillis());
+			result.put(limit.getName(), limitStats);
+		}
+		return result;
+	}
+
+	/**
+	 * Reads of things run, and collapsed into identical ones in flight, by kind of read.
+	 */
+	@GetMapping("coalescing")
+	public Map<String, Object> coalescing() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		for (SingleFlight<?> singleFlight : service.getSingleFlights()) {
+			Map<String, Object> singleFlightStats = new LinkedHashMap<>();
+			long executed = singleFlight.getExecuted();
+			long collapsed = singleFlight.getCollapsed();
+			singleFlightStats.put("executed", executed);
+			singleFlightStats.put("collapsed", collapsed);
+			singleFlightStats.put("collapsedRatio", (executed + collapsed == 0) ? 0 : (double) collapsed / (executed + collapsed));
+			singleFlightStats.put("inFlight", singleFlight.getInFlight());
+			result.put(singleFlight.getName(), singleFlightStats);
+		}
+		return result;
+	}
+
+	/**
+	 * Latency distributions and counts of the requests to things and of the repository and service methods, in the
+	 * Prometheus text format, for scraping.
+	 */
+	@GetMapping(value = "prometheus", produces = "text/plain;version=0.0.4;charset=utf-8")
+	public String prometheus() {
+		StringBuilder out = new StringBuilder(4096);
+		latencyMetrics.writePrometheus(out);
+		return out.toString();
+	}
+
+	//============
+	// Utilities
+	//============
+	private static Map<String, Object> toMap(SecondLevelCacheStatistics stats) {
+		return (stats == null) ? null :
+			toMap(stats.getHitCount(), stats.getMissCount(), stats.getPutCount(), stats.getElementCountInMemory());
+	}
+
+	private static Map<String, Object> toMap(NaturalIdCacheStatistics stats) {
+		return (stats == null) ? null :
+			toMap(stats.getHitCount(), stats.getMissCount(), stats.getPutCount(), stats.getElementCountInMemory());
+	}
+
+	private static Map<String, Object> toMap(long hits, long misses, long puts, long size) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("hits", hits);
+		result.put("misses", misses);
+		result.put("hitRatio", (hits + misses == 0) ? 0 : (double) hits / (hits + misses));
+		result.put("puts", puts);
+		result.put("size", size);
+		return result;
+	}
+}
@@ -16,20 +16,39 @@
 
 package microservice.web;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.security.Principal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Supplier;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.hibernate.search.engine.ProjectionConstants;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.HateoasPageableHandlerMethodArgumentResolver;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.MediaTypes;
 import org.springframework.hateoas.PagedResources;
 import org.springframework.hateoas.ResourceSupport;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
@@ -38,25 +57,94 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
+import microservice.model.ThingCursor;
 import microservice.model.ThingEntity;
+import microservice.model.ThingField;
 import microservice.model.ThingQueryParameters;
+import microservice.model.ThingRow;
+import microservice.model.ThingWatermark;
+import microservice.repository.FacetedPage;
+import microservice.repository.LuceneRepositoryCustom;
 import microservice.repository.ThingRepository;
 import microservice.service.AppService;
+import microservice.service.ImportReport;
+import microservice.service.ThingNameSuggester;
+import microservice.web.ConditionalRequest.Validators;
+import microservice.web.resource.HalSmileHttpMessageConverter;
 import microservice.web.resource.LinkUtils;
+import microservice.web.resource.SearchResources;
+import microservice.web.resource.SuggestionsResource;
 import microservice.web.resource.ThingResource;
 import microservice.web.resource.ThingResourceAssembler;
 
 @RestController
-@RequestMapping(value = "/" + ThingResource.REL_COL, produces = MediaTypes.HAL_JSON_VALUE)
+@RequestMapping(value = "/" + ThingResource.REL_COL, produces = { MediaTypes.HAL_JSON_VALUE, HalSmileHttpMessageConverter.SMILE_VALUE })
 public class ThingController extends BaseController {
 
+	public static final String PARAM_CURSOR = "cursor";
+	public static final String PARAM_FIELDS = "fields";
+	public static final String PARAM_LINKS = "links";
+	public static final String LINKS_NONE = "none";
+	public static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+	public static final String MEDIA_TYPE_CSV = "text/csv";
+	public static final String REL_SEARCH = "search";
+	public static final String REL_SUGGEST = "suggest";
+	public static final String PATH_EXPORT = "export";
+	public static final String PATH_IMPORT = "import";
+	public static final int MAX_SUGGESTIONS = 100;
+
+	/** Indexed fields matched by searches, with their boosts: a hit in the name weighs more than one in the creator */
+	public static final Map<String, Float> SEARCH_FIELDS;
+	static {
+		Map<String, Float> searchFields = new LinkedHashMap<>();
+		searchFields.put("name", 2f);
+		searchFields.put("createdBy", 1f);
+		SEARCH_FIELDS = Collections.unmodifiableMap(searchFields);
+	}
+
+	/** Facets counted on search hits, by name, with the index field each one is counted on */
+	public static final Map<String, String> SEARCH_FACETS;
+	static {
+		Map<String, String> searchFacets = new LinkedHashMap<>();
+		searchFacets.put("createdBy", ThingEntity.FIELD_CREATED_BY_FACET);
+		searchFacets.put("createdDay", ThingEntity.FIELD_CREATED_DAY);
+		searchFacets.put("createdMonth", ThingEntity.FIELD_CREATED_MONTH);
+		SEARCH_FACETS = Collections.unmodifiableMap(searchFacets);
+	}
+
+	/** Names of the endpoints run on the {@link JpaBulkhead}, for their timeouts and statistics */
+	private static final String ENDPOINT_CREATE = "create";
+	private static final String ENDPOINT_FIND_MATCHING = "findMatching";
+	private static final String ENDPOINT_FIND = "find";
+	private static final String ENDPOINT_PATCH = "patch";
+	private static final String ENDPOINT_EXPORT = "export";
+	private static final String ENDPOINT_SEARCH = "search";
+	private static final String ENDPOINT_SUGGEST = "suggest";
+
+	private static final String[] SEARCH_PROJECTION = { ProjectionConstants.ID, "name", "createdOn", "createdBy" };
+
 	public static final Supplier<Link> TEMPLATED_LINK_COL =
-			() -> LinkUtils.createTemplatedLink(ThingController.class, ThingResource.REL_COL, "names", "page", "size", "sort");
+			LinkUtils.cachingTemplatedLink(ThingController.class, null, ThingResource.REL_COL,
+					"names", "createdBy", "createdAfter", "createdBefore", "page", "size", "sort", PARAM_CURSOR, PARAM_FIELDS, PARAM_LINKS);
+
+	public static final Supplier<Link> TEMPLATED_LINK_SEARCH =
+			LinkUtils.cachingTemplatedLink(ThingController.class, REL_SEARCH, REL_SEARCH, "q", "projected", "page", "size");
+
+	public static final Supplier<Link> TEMPLATED_LINK_SUGGEST =
+			LinkUtils.cachingTemplatedLink(ThingController.class, REL_SUGGEST, REL_SUGGEST, "prefix", "size");
 
 	public static final Supplier<Link> TEMPLATED_LINK_ITEM =
-			() -> LinkUtils.createTemplatedLink(ThingController.class, ThingResource.REL_ITEM);
+			LinkUtils.cachingTemplatedLink(ThingController.class, null, ThingResource.REL_ITEM);
 
 	@Autowired
 	private AppService service;
@@ -64,45 +152,223 @@ public class ThingController extends BaseController {
 	@Autowired
 	private ThingRepository repo;
 
+	@Autowired
+	private LuceneRepositoryCustom<ThingEntity> searchRepo;
+
+	@Autowired
+	private ThingNameSuggester suggester;
+
+	@Autowired
+	private JpaBulkhead bulkhead;
+
 	@Autowired
 	private ThingResourceAssembler entityAssembler;
 
 	@Autowired
-    private PagedResourcesAssembler<ThingEntity> pagedAssembler;
+	private HateoasPageableHandlerMethodArgumentResolver pageableResolver;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	/**
+	 * Representations are negotiated by the {@code Accept} header, between HAL+JSON and HAL as Smile.
+	 */
+	@ModelAttribute
+	public void varyByAccept(HttpServletResponse response) {
+		response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+	}
 
-	@PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-	public ResponseEntity<ResourceSupport> create(@RequestBody ThingDTO thingDTO, Principal principal) {
+	@PostMapping(consumes = { MediaType.APPLICATION_JSON_VALUE, HalSmileHttpMessageConverter.SMILE_VALUE })
+	public DeferredResult<ResponseEntity<ResourceSupport>> create(@RequestBody ThingDTO thingDTO, Principal principal) {
 		String user = resolveUser(principal);
-		ThingEntity entity = repo.save(thingDTO.createEntity(user));
-		return createResponse(entity);
+		String baseUri = LinkUtils.getBaseUri(ThingController.class);
+		return bulkhead.submitWrite(ENDPOINT_CREATE, () -> createResponse(repo.save(thingDTO.createEntity(user)), baseUri));
 	}
 
+	/**
+	 * Page of the things matching the query parameters. When a {@code cursor} parameter is present (even empty, to
+	 * start from the beginning) the collection is walked in keyset mode instead: every response links to the
+	 * {@code next} one through an opaque cursor, and no total is counted.
+	 * <p>
+	 * In page mode, responses carry an ETag and Last-Modified derived from the watermark of the matching things, and
+	 * conditional requests for an unchanged collection are answered with 304 before loading any of them. The
+	 * watermark also counts the things, so the page is read without counting them again.
+	 * <p>
+	 * A {@code fields} parameter (e.g. {@code fields=id,name}) restricts the properties of the things returned to
+	 * those listed (the id included, if listed), and only their columns are read; {@code links=none} leaves out the
+	 * links of each thing. Without them, things keep their default representation.
+	 */
 	@GetMapping
-	public ResponseEntity<ResourceSupport> findMatching(
+	public DeferredResult<ResponseEntity<?>> findMatching(
 			@ModelAttribute ThingQueryParameters qParams,
-			Pageable pageRequest) {
-		List<ThingEntity> entitiesList = repo.findMatching(qParams);
-		Page<ThingEntity> entitiesPage = new PageOfCollection<ThingEntity>(entitiesList, pageRequest);
-//		Resources<ResourceSupport> resources = new Resources<>(entityAssembler.toResources(entitiesPage));
-		PagedResources<ResourceSupport> resources = pagedAssembler.toResource(entitiesPage, entityAssembler);
-		resources.add(TEMPLATED_LINK_COL.get());
-		return ResponseEntity.ok(resources);
+			Pageable pageRequest,
+			@RequestParam(value = PARAM_CURSOR, required = false) String cursor,
+			@RequestParam(value = PARAM_FIELDS, required = false) String fields,
+			@RequestParam(value = PARAM_LINKS, required = false) String links,
+			HttpServletRequest request) {
+		validateSort(pageRequest.getSort());
+		Set<ThingField> selectedFields = resolveFields(fields);
+		Set<ThingField> readFields = (selectedFields == null) ? ThingField.ALL : selectedFields;
+		boolean withLinks = resolveLinks(links);
+
+		// Everything needed from the request is read here: the work may go on after it is answered and recycled
+		String baseUri = LinkUtils.getBaseUri(ThingController.class);
+		Link collectionLink = TEMPLATED_LINK_COL.get();
+		if (cursor != null) {
+			validateCursorSort(pageRequest.getSort());
+			LinkedMultiValueMap<String, String> uriParams = LinkUtils.getUriParamsExcluding(request, "page");
+			return bulkhead.submit(ENDPOINT_FIND_MATCHING, () ->
+					findMatchingAfter(qParams, selectedFields, withLinks, pageRequest, cursor, baseUri, uriParams, collectionLink));
+		}
+		ConditionalRequest conditional = ConditionalRequest.of(request);
+		PagedResourcesAssembler<ThingRow> requestPagedAssembler = new PagedResourcesAssembler<>(pageableResolver, ServletUriComponentsBuilder.fromRequest(request).build());
+		// The watermark and the page both read the names staged once, if there are that many
+		return bulkhead.submit(ENDPOINT_FIND_MATCHING, () -> service.withNamesStaged(qParams, () -> {
+			ThingWatermark watermark = service.findWatermark(qParams);
+			Validators validators = validate(conditional, watermark);
+			if (validators.isNotModified())
+				return validators.response().build();
+
+			// Paging links and metadata are resolved on an empty page of the same shape; the rows are streamed as they are
+			Page<ThingRow> entitiesPage = service.findThings(qParams, readFields, pageRequest, watermark.getCount());
+			Page<ThingRow> shape = new PageImpl<>(Collections.emptyList(), pageRequest, entitiesPage.getTotalElements());
+			PagedResources<ResourceSupport> envelope = requestPagedAssembler.toResource(shape, entityAssembler);
+			envelope.add(collectionLink);
+			return validators.response().body(entityAssembler.toPage(
+					entitiesPage.getContent(), selectedFields, withLinks, envelope.getLinks(), envelope.getMetadata(), baseUri));
+		}));
+	}
+
+	/**
+	 * Streams all the things matching the query parameters as newline delimited JSON. Rows are read through a
+	 * database cursor and written as they come, so neither the rows nor the response are ever held in memory.
+	 * <p>
+	 * The export runs on the {@link JpaBulkhead} like any other read, with a timeout of its own
+	 * ({@code microservice.async-timeouts-millis.export}) long enough to stream large collections.
+	 */
+	@GetMapping(value = PATH_EXPORT, produces = MEDIA_TYPE_NDJSON)
+	public DeferredResult<Void> export(@ModelAttribute ThingQueryParameters qParams, HttpServletResponse response) {
+		ObjectWriter writer = objectMapper.writerFor(ThingDTO.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		response.setContentType(MEDIA_TYPE_NDJSON);
+		return bulkhead.submitStreaming(ENDPOINT_EXPORT, () -> {
+			JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+			generator.setRootValueSeparator(null);
+			repo.scrollMatching(qParams, entity -> writeLine(writer, generator, ThingDTO.fromEntity(entity)));
+			generator.flush();
+			return null;
+		});
 	}
 
+	/**
+	 * Creates a thing for each row of a newline delimited JSON or CSV payload. The payload is parsed as it is read
+	 * and inserted in JDBC batched chunks; rows which fail are reported without aborting the import.
+	 */
+	@PostMapping(value = PATH_IMPORT, consumes = { MEDIA_TYPE_NDJSON, MEDIA_TYPE_CSV }, produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<ImportReport> importThings(HttpServletRequest request, Principal principal) throws IOException {
+		String user = resolveUser(principal);
+		InputStream input = request.getInputStream();
+		boolean csv = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.parseMediaType(MEDIA_TYPE_CSV));
+		ThingImportReader reader = csv ? ThingImportReader.csv(input) : ThingImportReader.ndjson(input, objectMapper);
+		return ResponseEntity.ok(service.importThings(reader, user));
+	}
+
+	/**
+	 * Page of the things matching a full text query on their name and creator, sorted by relevance. Paging is done
+	 * by the index, so only the hits of the requested page are read. With {@code projected=true} the things are
+	 * built from the values stored in the index and the database is not queried at all.
+	 * <p>
+	 * Counts of all the hits by creator and by creation day and month are returned as {@code facets}.
+	 */
+	@GetMapping(value = REL_SEARCH)
+	public DeferredResult<ResponseEntity<ResourceSupport>> search(
+			@RequestParam("q") String text,
+			@RequestParam(value = "projected", defaultValue = "false") boolean projected,
+			Pageable pageRequest,
+			HttpServletRequest request) {
+		String baseUri = LinkUtils.getBaseUri(ThingController.class);
+		Link searchLink = TEMPLATED_LINK_SEARCH.get();
+		PagedResourcesAssembler<ThingRow> requestPagedAssembler = new PagedResourcesAssembler<>(pageableResolver, ServletUriComponentsBuilder.fromRequest(request).build());
+		return bulkhead.submit(ENDPOINT_SEARCH, () -> {
+			FacetedPage<ThingRow> rowsPage = projected ?
+					searchRepo.findProjections(SEARCH_FIELDS, text, ThingEntity.class, pageRequest, SEARCH_FACETS, SEARCH_PROJECTION).map(ThingController::toRow) :
+					searchRepo.find(SEARCH_FIELDS, text, ThingEntity.class, pageRequest, SEARCH_FACETS).map(ThingRow::of);
+			SearchResources resources = new SearchResources(
+					requestPagedAssembler.toResource(rowsPage, row -> entityAssembler.toResource(row, null, true, baseUri)), rowsPage.getFacets());
+			resources.add(searchLink);
+			return ResponseEntity.ok(resources);
+		});
+	}
+
+	/**
+	 * Names of things starting with the given prefix, regardless of case, in alphabetical order. Served from memory,
+	 * for type-ahead.
+	 */
+	@GetMapping(value = REL_SUGGEST)
+	public DeferredResult<ResponseEntity<ResourceSupport>> suggest(
+			@RequestParam("prefix") String prefix,
+			@RequestParam(value = "size", defaultValue = "10") int size) {
+		Link suggestLink = TEMPLATED_LINK_SUGGEST.get();
+		return bulkhead.submit(ENDPOINT_SUGGEST, () -> {
+			List<String> names = suggester.suggest(prefix, Math.max(0, Math.min(size, MAX_SUGGESTIONS)));
+			return ResponseEntity.ok(new SuggestionsResource(prefix, names, suggestLink));
+		});
+	}
+
+	/**
+	 * Thing with the given id. Responses carry an ETag and Last-Modified; conditional requests for an unchanged thing
+	 * are answered with 304 by checking its version, without loading it.
+	 * <p>
+	 * Supports the {@code fields} and {@code links} parameters of {@link #findMatching}. When only some fields are
+	 * requested, only their columns are read, bypassing the second level cache.
+	 */
 	@GetMapping(value = "{id}")
-	public ResponseEntity<ResourceSupport> find(@PathVariable("id") Long id) {
-		ThingEntity entity = repo.findOne(id);
-		return createResponse(entity);
+	public DeferredResult<ResponseEntity<ResourceSupport>> find(
+			@PathVariable("id") Long id,
+			@RequestParam(value = PARAM_FIELDS, required = false) String fields,
+			@RequestParam(value = PARAM_LINKS, required = false) String links,
+			HttpServletRequest request) {
+		Set<ThingField> selectedFields = resolveFields(fields);
+		boolean withLinks = resolveLinks(links);
+		ConditionalRequest conditional = ConditionalRequest.of(request);
+		String baseUri = LinkUtils.getBaseUri(ThingController.class);
+		return bulkhead.submit(ENDPOINT_FIND, () -> {
+			boolean partial = selectedFields != null && !selectedFields.equals(ThingField.ALL);
+			Validators validators = null;
+			if (partial || conditional.isConditional()) {
+				ThingWatermark watermark = service.findWatermark(id);
+				if (!watermark.isEmpty()) {
+					validators = validate(conditional, watermark);
+					if (validators.isNotModified())
+						return validators.response().build();
+				}
+			}
+
+			ThingRow row;
+			if (partial) {
+				// The validators of the watermark read above hold for the row
+				row = service.findThingRow(id, selectedFields);
+			} else {
+				ThingEntity entity = service.findThing(id);
+				if (entity != null) {
+					validators = validate(conditional, ThingWatermark.of(entity));
+					if (validators.isNotModified())
+						return validators.response().build();
+				}
+				row = (entity == null) ? null : ThingRow.of(entity);
+			}
+			ResourceSupport resource = entityAssembler.toResource(row, selectedFields, withLinks, baseUri);
+			return (validators == null || row == null) ? ResponseEntity.ok(resource) : validators.response().body(resource);
+		});
 	}
 
-	@PatchMapping(value = "{id}")
-	public ResponseEntity<ResourceSupport> patch(
+	@PatchMapping(value = "{id}", consumes = { MediaType.APPLICATION_JSON_VALUE, HalSmileHttpMessageConverter.SMILE_VALUE })
+	public DeferredResult<ResponseEntity<ResourceSupport>> patch(
 			@PathVariable("id") Long id,
 			@RequestBody ThingDTO thingDTO,
 			Principal principal) {
 		String user = resolveUser(principal);
-		ThingEntity entity = service.updateThing(id, thingDTO.getName(), user);
-		return createResponse(entity);
+		String baseUri = LinkUtils.getBaseUri(ThingController.class);
+		return bulkhead.submitWrite(ENDPOINT_PATCH, () -> createResponse(service.updateThing(id, thingDTO.getName(), user), baseUri));
 	}
 
 	@DeleteMapping(value = "{id}")
@@ -117,7 +383,85 @@ public class ThingController extends BaseController {
 		return (principal == null) ? "" : principal.getName(); // Resolve authenticated user
 	}
 
-	private ResponseEntity<ResourceSupport> createResponse(ThingEntity entity) {
-		return ResponseEntity.ok(entityAssembler.toResource(entity));
+	private ResponseEntity<?> findMatchingAfter(ThingQueryParameters qParams, Set<ThingField> fields, boolean withLinks,
+			Pageable pageRequest, String cursor, String baseUri, LinkedMultiValueMap<String, String> uriParams, Link collectionLink) {
+		ThingCursor position = resolveCursor(cursor, pageRequest.getSort());
+		Slice<ThingRow> entitiesSlice = service.findThings(qParams, (fields == null) ? ThingField.ALL : fields, position, pageRequest.getPageSize());
+		List<Link> links = new ArrayList<>();
+
+		links.add(LinkUtils.createLink(baseUri, uriParams).withSelfRel());
+		if (entitiesSlice.hasNext()) {
+			ThingRow last = entitiesSlice.getContent().get(entitiesSlice.getNumberOfElements() - 1);
+			uriParams.set(PARAM_CURSOR, position.next(last).encode());
+			links.add(LinkUtils.createLink(baseUri, uriParams).withRel(Link.REL_NEXT));
+		}
+		links.add(collectionLink);
+		return ResponseEntity.ok(entityAssembler.toPage(entitiesSlice.getContent(), fields, withLinks, links, null, baseUri));
+	}
+
+	private ThingCursor resolveCursor(String cursor, Sort sort) {
+		try {
+			return cursor.isEmpty() ? ThingCursor.first(sort) : ThingCursor.decode(cursor);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidCursorException(cursor, e);
+		}
+	}
+
+	/**
+	 * Things are sorted by their fields only; any other property would fail the query.
+	 */
+	private static void validateSort(Sort sort) {
+		if (sort == null) return;
+		for (Sort.Order order : sort)
+			if (ThingField.forProperty(order.getProperty()) == null)
+				throw new InvalidSortException(order.getProperty());
+	}
+
+	/**
+	 * Cursors follow a single order (and the id as tie breaker); further orders would be silently ignored.
+	 */
+	private static void validateCursorSort(Sort sort) {
+		if (sort == null) return;
+		int orders = 0;
+		for (Sort.Order order : sort)
+			if (++orders > 1)
+				throw new InvalidSortException(order.getProperty(), "cursors follow a single order");
+	}
+
+	/**
+	 * @return Fields requested, or null if the parameter is missing, for the default representation
+	 */
+	private static Set<ThingField> resolveFields(String fields) {
+		if (fields == null) return null;
+		try {
+			return ThingField.parse(fields);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidFieldsException(fields, e);
+		}
+	}
+
+	private static boolean resolveLinks(String links) {
+		return !LINKS_NONE.equals(links);
+	}
+
+	private static ThingRow toRow(Object[] projection) {
+		return new ThingRow((Long) projection[0], (String) projection[1], (Instant) projection[2], (String) projection[3]);
+	}
+
+	private static Validators validate(ConditionalRequest conditional, ThingWatermark watermark) {
+		return conditional.validate(watermark.getLastModified(), watermark.getCount(), watermark.getVersionSum());
+	}
+
+	private static void writeLine(ObjectWriter writer, JsonGenerator generator, Object value) {
+		try {
+			writer.writeValue(generator, value);
+			generator.writeRaw('\n');
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private ResponseEntity<ResourceSupport> createResponse(ThingEntity entity, String baseUri) {
+		return ResponseEntity.ok(entityAssembler.toResource(entity, baseUri));
 	}
 }
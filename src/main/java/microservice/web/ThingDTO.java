@@ -27,6 +27,15 @@ public class ThingDTO {
     private Instant createdOn;
     private String createdBy;
 
+	public static ThingDTO fromEntity(ThingEntity entity) {
+		ThingDTO result = new ThingDTO();
+		result.setId(entity.getId());
+		result.setName(entity.getName());
+		result.setCreatedOn(entity.getCreatedOn());
+		result.setCreatedBy(entity.getCreatedBy());
+		return result;
+	}
+
 	public ThingEntity createEntity(String user) {
 		return new ThingEntity(name, user);
 	}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Reads the names of the things in an import payload, one line at a time as they are consumed. Blank lines are
+ * skipped. A malformed line makes {@link #next()} throw {@link IllegalArgumentException}, after which reading can
+ * continue with the following line.
+ */
+public class ThingImportReader implements Iterator<String> {
+
+	private static final String CSV_NAME_COLUMN = "name";
+
+	/**
+	 * @param input Newline delimited JSON, one {@link ThingDTO} per line
+	 * @param objectMapper Mapper used to parse each line
+	 */
+	public static ThingImportReader ndjson(InputStream input, ObjectMapper objectMapper) {
+		ObjectReader reader = objectMapper.readerFor(ThingDTO.class);
+		return new ThingImportReader(input, line -> {
+			try {
+				ThingDTO thingDTO = reader.readValue(line);
+				return (thingDTO == null) ? null : thingDTO.getName();
+			} catch (JsonProcessingException e) {
+				throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * @param input CSV with a {@code name} column declared in a header line. Without such header, the first line is
+	 * data and names are taken from the first column.
+	 */
+	public static ThingImportReader csv(InputStream input) {
+		ThingImportReader result = new ThingImportReader(input, null);
+		int nameColumn = 0;
+		if (result.hasNext()) {
+			List<String> header = parseCsvLine(result.nextLine);
+			if (header.contains(CSV_NAME_COLUMN)) {
+				nameColumn = header.indexOf(CSV_NAME_COLUMN);
+				result.nextLine = null;
+			}
+		}
+
+		int column = nameColumn;
+		result.lineParser = line -> {
+			List<String> values = parseCsvLine(line);
+			if (values.size() <= column)
+				throw new IllegalArgumentException("Missing column '" + CSV_NAME_COLUMN + "'");
+			return values.get(column);
+		};
+		return result;
+	}
+
+	/**
+	 * Splits a CSV line into its values, honoring double quoted values (with {@code ""} as escaped quote).
+	 */
+	private static List<String> parseCsvLine(String line) {
+		List<String> result = new ArrayList<>();
+		StringBuilder value = new StringBuilder();
+		boolean quoted = false;
+		for (int idx = 0; idx < line.length(); idx++) {
+			char ch = line.charAt(idx);
+			if (quoted) {
+				if (ch != '"')
+					value.append(ch);
+				else if (idx + 1 < line.length() && line.charAt(idx + 1) == '"')
+					value.append(line.charAt(++idx));
+				else
+					quoted = false;
+			} else if (ch == '"') {
+				quoted = true;
+			} else if (ch == ',') {
+				result.add(value.toString().trim());
+				value.setLength(0);
+			} else {
+				value.append(ch);
+			}
+		}
+		if (quoted)
+			throw new IllegalArgumentException("Unterminated quoted value");
+		result.add(value.toString().trim());
+		return result;
+	}
+
+	private final BufferedReader reader;
+	private Function<String, String> lineParser;
+	private String nextLine;
+
+	private ThingImportReader(InputStream input, Function<String, String> lineParser) {
+		this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+		this.lineParser = lineParser;
+	}
+
+	@Override
+	public boolean hasNext() {
+		try {
+			while (nextLine == null) {
+				String line = reader.readLine();
+				if (line == null)
+					return false;
+				if (!line.trim().isEmpty())
+					nextLine = line;
+			}
+			return true;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public String next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		String line = nextLine;
+		nextLine = null;
+		return lineParser.apply(line);
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web.resource;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeBindings;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Reads and writes Smile, the binary counterpart of JSON, with the HAL object mapper: its serializers only drive a
+ * generator, so resources keep exactly the HAL structure they have as JSON, only encoded more compactly.
+ */
+public class HalSmileHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+	public static final String SMILE_VALUE = "application/x-jackson-smile";
+	public static final MediaType SMILE = MediaType.parseMediaType(SMILE_VALUE);
+
+	private final ObjectMapper objectMapper;
+	private final SmileFactory smileFactory;
+
+	public HalSmileHttpMessageConverter(ObjectMapper halObjectMapper) {
+		super(SMILE);
+		this.objectMapper = halObjectMapper;
+		this.smileFactory = new SmileFactory(halObjectMapper);
+	}
+
+	/**
+	 * Smile factory whose generators write values with the HAL object mapper.
+	 */
+	public SmileFactory getSmileFactory() {
+		return smileFactory;
+	}
+
+	@Override
+	public boolean canRead(Class<?> clazz, MediaType mediaType) {
+		return canRead(clazz, null, mediaType);
+	}
+
+	@Override
+	public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+		return canRead(mediaType) && objectMapper.canDeserialize(getJavaType(type, contextClass));
+	}
+
+	/**
+	 * Only when Smile is explicitly negotiated: handlers not declaring it keep answering wildcard requests with JSON.
+	 */
+	@Override
+	public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+		return mediaType != null && canWrite(mediaType) && objectMapper.canSerialize(clazz);
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		// Whatever the object mapper can handle: see canRead and canWrite
+		return true;
+	}
+
+	@Override
+	public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+		return read(getJavaType(type, contextClass), inputMessage);
+	}
+
+	@Override
+	protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+		return read(getJavaType(clazz, null), inputMessage);
+	}
+
+	@Override
+	protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+		JsonGenerator generator = smileFactory.createGenerator(outputMessage.getBody());
+		objectMapper.writeValue(generator, object);
+		generator.flush();
+	}
+
+	//============
+	// Utilities
+	//============
+	private Object read(JavaType javaType, HttpInputMessage inputMessage) throws IOException {
+		try (JsonParser parser = smileFactory.createParser(inputMessage.getBody())) {
+			return objectMapper.readValue(parser, javaType);
+		} catch (IOException e) {
+			throw new HttpMessageNotReadableException("Could not read Smile document: " + e.getMessage(), e);
+		}
+	}
+
+	private JavaType getJavaType(Type type, Class<?> contextClass) {
+		TypeFactory typeFactory = objectMapper.getTypeFactory();
+		TypeBindings bindings = (contextClass == null) ? TypeBindings.emptyBindings() : typeFactory.constructType(contextClass).getBindings();
+		return typeFactory.constructType(type, bindings);
+	}
+}
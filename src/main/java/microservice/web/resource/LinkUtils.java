@@ -21,6 +21,9 @@ import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -33,10 +36,17 @@ import org.springframework.hateoas.TemplateVariables;
 import org.springframework.hateoas.UriTemplate;
 import org.springframework.hateoas.mvc.ControllerLinkBuilder;
 import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.util.UriComponentsBuilder;
 
 public class LinkUtils {
 
+	/** Most base URIs links are cached for; requests reaching the service through further hosts are not cached */
+	public static final int MAX_CACHED_BASE_URIS = 100;
+
+	private static final String BASE_URI_ATTRIBUTE_PREFIX = LinkUtils.class.getName() + ".baseUri.";
+
 	/**
 	 * Creates {@link Link} pointing to the URI of a {@link LinkBuilder} with its query parameters expanded with
 	 * the values found in a {@link HttpServletRequest}.
@@ -46,7 +56,15 @@ public class LinkUtils {
 	 * @return {@link Link} with parameter values expanded.
 	 */
 	public static Link createLink(LinkBuilder linkBuilder, LinkedMultiValueMap<String, String> uriParams) {
-		UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUriString(linkBuilder.withSelfRel().getHref());
+		return createLink(linkBuilder.withSelfRel().getHref(), uriParams);
+	}
+
+	/**
+	 * Same as {@link #createLink(LinkBuilder, LinkedMultiValueMap)}, from an href resolved beforehand (e.g. with
+	 * {@link #getBaseUri(Class)}), so that no request is needed.
+	 */
+	public static Link createLink(String href, LinkedMultiValueMap<String, String> uriParams) {
+		UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUriString(href);
 		String uriStr = uriBuilder
 				.replaceQueryParams(uriParams)
 				.build(true)
@@ -101,6 +119,46 @@ public class LinkUtils {
 		return new Link(new UriTemplate(uriString, createTemplateVars(requestParamNames)), rel);
 	}
 
+	/**
+	 * Supplier of the same link as {@link #createTemplatedLink(ControllerLinkBuilder, String, String...)} for a
+	 * controller, or a path under it. The link is built once per base URI (the template variables once and for all)
+	 * and reused afterwards; the base URI itself is resolved once per request (see {@link #getBaseUri(Class)}).
+	 *
+	 * @param controllerClass Controller the href of the link points to
+	 * @param path Path appended to the URI of the controller, or null for none
+	 */
+	public static Supplier<Link> cachingTemplatedLink(Class<?> controllerClass, String path, String rel, String... requestParamNames) {
+		ConcurrentMap<String, Link> linksByUri = new ConcurrentHashMap<>();
+		TemplateVariables templateVars = createTemplateVars(requestParamNames);
+		return () -> {
+			String baseUri = getBaseUri(controllerClass);
+			Link result = linksByUri.get(baseUri);
+			if (result == null) {
+				String uriString = (path == null) ? baseUri : baseUri + "/" + path;
+				result = new Link(new UriTemplate(uriString, templateVars), rel);
+				if (linksByUri.size() < MAX_CACHED_BASE_URIS)
+					linksByUri.putIfAbsent(baseUri, result);
+			}
+			return result;
+		};
+	}
+
+	/**
+	 * URI of a controller as seen by the current request (forwarded headers included). Resolving it is costly, so
+	 * it is done once per request and kept as a request attribute.
+	 */
+	public static String getBaseUri(Class<?> controllerClass) {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		String attributeName = BASE_URI_ATTRIBUTE_PREFIX + controllerClass.getName();
+		String result = (attributes == null) ? null : (String) attributes.getAttribute(attributeName, RequestAttributes.SCOPE_REQUEST);
+		if (result == null) {
+			result = linkTo(controllerClass).toUri().toString();
+			if (attributes != null)
+				attributes.setAttribute(attributeName, result, RequestAttributes.SCOPE_REQUEST);
+		}
+		return result;
+	}
+
 	public static TemplateVariables createTemplateVars(String... requestParamNames) {
 		TemplateVariable[] vars = Stream.of(requestParamNames)
 				.map(name -> new TemplateVariable(name, TemplateVariable.VariableType.REQUEST_PARAM))
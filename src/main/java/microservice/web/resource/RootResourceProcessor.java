@@ -31,6 +31,8 @@ public class RootResourceProcessor implements ResourceProcessor<RepositoryLinksR
 //	@Override
 	public RepositoryLinksResource process(RepositoryLinksResource resource) {
 		resource.add(ThingController.TEMPLATED_LINK_COL.get());
+		resource.add(ThingController.TEMPLATED_LINK_SEARCH.get());
+		resource.add(ThingController.TEMPLATED_LINK_SUGGEST.get());
 		return resource;
 	}
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web.resource;
+
+import java.util.Map;
+
+import org.springframework.hateoas.PagedResources;
+import org.springframework.hateoas.ResourceSupport;
+
+/**
+ * Page of search hits, with the facet counts of all the hits alongside.
+ */
+public class SearchResources extends PagedResources<ResourceSupport> {
+
+	private final Map<String, Map<String, Integer>> facets;
+
+	public SearchResources(PagedResources<ResourceSupport> page, Map<String, Map<String, Integer>> facets) {
+		super(page.getContent(), page.getMetadata(), page.getLinks());
+		this.facets = facets;
+	}
+
+	public Map<String, Map<String, Integer>> getFacets() {
+		return facets;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return super.equals(obj) && (obj instanceof SearchResources) && facets.equals(((SearchResources) obj).facets);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * super.hashCode() + facets.hashCode();
+	}
+}
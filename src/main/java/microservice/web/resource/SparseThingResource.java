@@ -0,0 +1,56 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package microservice.web.resource;
+
+import java.time.Instant;
+import java.util.Set;
+
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.ResourceSupport;
+import org.springframework.hateoas.core.Relation;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import microservice.model.ThingField;
+import microservice.model.ThingRow;
+
+/**
+ * Thing with only the fields requested through the {@code fields} parameter; those not requested are null and left
+ * out. Unlike {@link ThingResource}, the default representation, it includes the id when requested.
+ */
+@Relation(value = ThingResource.REL_ITEM, collectionRelation = ThingResource.REL_COL)
+@JsonInclude(Include.NON_NULL)
+@JsonPropertyOrder({ "id", "name", "createdOn", "createdBy" })
+public class SparseThingResource extends ResourceSupport {
+
+    /** Included explicitly: otherwise the (ignored) id of ResourceSupport hides it */
+    @JsonProperty("id")
+    public final Long id;
+    public final String name;
+    public final Instant createdOn;
+    public final String createdBy;
+
+    public SparseThingResource(ThingRow row, Set<ThingField> fields, Link... links) {
+    	id = fields.contains(ThingField.ID) ? row.getId() : null;
+    	name = fields.contains(ThingField.NAME) ? row.getName() : null;
+    	createdOn = fields.contains(ThingField.CREATED_ON) ? row.getCreatedOn() : null;
+    	createdBy = fields.contains(ThingField.CREATED_BY) ? row.getCreatedBy() : null;
+    	add(links);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web.resource;
+
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.PagedResources.PageMetadata;
+
+import microservice.model.ThingField;
+import microservice.model.ThingRow;
+
+/**
+ * Collection of things written straight to the response by {@link ThingPageHttpMessageConverter}, in the same HAL
+ * format as {@code PagedResources} of {@link ThingResource}, without building a resource per thing.
+ */
+public class ThingPage {
+
+	private final List<ThingRow> rows;
+	private final Set<ThingField> fields;
+	private final boolean withItemLinks;
+	private final String itemHrefPrefix;
+	private final Link collectionLink;
+	private final List<Link> links;
+	private final PageMetadata metadata;
+
+	ThingPage(List<ThingRow> rows, Set<ThingField> fields, boolean withItemLinks, String itemHrefPrefix, Link collectionLink,
+			List<Link> links, PageMetadata metadata) {
+		this.rows = rows;
+		this.fields = fields;
+		this.withItemLinks = withItemLinks;
+		this.itemHrefPrefix = itemHrefPrefix;
+		this.collectionLink = collectionLink;
+		this.links = links;
+		this.metadata = metadata;
+	}
+
+	public List<ThingRow> getRows() {
+		return rows;
+	}
+
+	/**
+	 * Fields of the things requested, written as {@link SparseThingResource}s (the others are left out); null to
+	 * write the things as {@link ThingResource}s.
+	 */
+	public Set<ThingField> getFields() {
+		return fields;
+	}
+
+	/**
+	 * Whether to write the links of each thing.
+	 */
+	public boolean isWithItemLinks() {
+		return withItemLinks;
+	}
+
+	/**
+	 * Prefix of the self and item links of every thing, to which its id is appended.
+	 */
+	public String getItemHrefPrefix() {
+		return itemHrefPrefix;
+	}
+
+	public Link getCollectionLink() {
+		return collectionLink;
+	}
+
+	public List<Link> getLinks() {
+		return links;
+	}
+
+	/**
+	 * Paging information, or null for a slice walked in keyset mode.
+	 */
+	public PageMetadata getMetadata() {
+		return metadata;
+	}
+}
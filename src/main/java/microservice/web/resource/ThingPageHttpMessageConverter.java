@@ -0,0 +1,219 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web.resource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+import microservice.model.ThingField;
+import microservice.model.ThingRow;
+
+/**
+ * Writes a {@link ThingPage} as HAL straight to the response generator: {@code _embedded.things}, {@code _links}
+ * and {@code page}, in this order. The properties of every thing are written in the order, and with the null
+ * inclusion, the HAL object mapper resolves for {@link ThingResource} (or {@link SparseThingResource}, when fields
+ * were requested); so the output is byte for byte the one of the equivalent {@code PagedResources}.
+ * <p>
+ * Pages are written as Smile instead when negotiated, with the same structure.
+ */
+public class ThingPageHttpMessageConverter extends AbstractHttpMessageConverter<ThingPage> {
+
+	private static final String EMBEDDED = "_embedded";
+	private static final String LINKS = "_links";
+	private static final String PAGE = "page";
+
+	private final ObjectMapper objectMapper;
+	private final JsonFactory smileFactory;
+	/** Resolved on first write: the HAL module is registered on the object mapper after this converter is built */
+	private volatile ThingShape defaultShape;
+	private volatile ThingShape sparseShape;
+
+	/**
+	 * @param smileFactory Factory of the Smile generators, with the HAL object mapper as codec
+	 */
+	public ThingPageHttpMessageConverter(ObjectMapper halObjectMapper, JsonFactory smileFactory) {
+		super(MediaTypes.HAL_JSON, MediaType.APPLICATION_JSON, HalSmileHttpMessageConverter.SMILE);
+		this.objectMapper = halObjectMapper;
+		this.smileFactory = smileFactory;
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return ThingPage.class.isAssignableFrom(clazz);
+	}
+
+	@Override
+	protected boolean canRead(MediaType mediaType) {
+		return false;
+	}
+
+	@Override
+	protected ThingPage readInternal(Class<? extends ThingPage> clazz, HttpInputMessage inputMessage) {
+		throw new HttpMessageNotReadableException("Thing pages are written only");
+	}
+
+	@Override
+	protected void writeInternal(ThingPage page, HttpOutputMessage outputMessage) throws IOException {
+		MediaType contentType = outputMessage.getHeaders().getContentType();
+		boolean smile = contentType != null && HalSmileHttpMessageConverter.SMILE.isCompatibleWith(contentType);
+		JsonGenerator generator = (smile ? smileFactory : objectMapper.getFactory()).createGenerator(outputMessage.getBody(), JsonEncoding.UTF8);
+		if (!smile && objectMapper.isEnabled(SerializationFeature.INDENT_OUTPUT))
+			generator.useDefaultPrettyPrinter();
+
+		generator.writeStartObject();
+		if (!page.getRows().isEmpty()) {
+			generator.writeObjectFieldStart(EMBEDDED);
+			generator.writeArrayFieldStart(ThingResource.REL_COL);
+			for (ThingRow row : page.getRows())
+				writeThing(generator, row, page);
+			generator.writeEndArray();
+			generator.writeEndObject();
+		}
+		writeLinks(generator, page.getLinks());
+		if (page.getMetadata() != null)
+			generator.writeObjectField(PAGE, page.getMetadata());
+		generator.writeEndObject();
+		generator.flush();
+	}
+
+	//============
+	// Utilities
+	//============
+	private void writeThing(JsonGenerator generator, ThingRow row, ThingPage page) throws IOException {
+		ThingShape shape = getShape(page.getFields() != null);
+		Set<ThingField> fields = (page.getFields() == null) ? ThingField.ALL : page.getFields();
+		generator.writeStartObject();
+		for (String property : shape.properties) {
+			if (property.equals(LINKS)) {
+				if (!page.isWithItemLinks()) continue;
+				String itemHref = page.getItemHrefPrefix() + row.getId();
+				generator.writeObjectFieldStart(LINKS);
+				writeHref(generator, Link.REL_SELF, itemHref);
+				writeHref(generator, ThingResource.REL_ITEM, itemHref);
+				generator.writeFieldName(page.getCollectionLink().getRel());
+				writeLink(generator, page.getCollectionLink());
+				generator.writeEndObject();
+				continue;
+			}
+
+			ThingField field = ThingField.forProperty(property);
+			Object value = fields.contains(field) ? row.getValue(property) : null;
+			if (value != null)
+				generator.writeObjectField(property, value);
+			else if (shape.writeNulls)
+				generator.writeNullField(property);
+		}
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Writes links grouped by relation, a single link as an object and several as an array, like the HAL link
+	 * serializer does.
+	 */
+	private static void writeLinks(JsonGenerator generator, List<Link> links) throws IOException {
+		if (links.isEmpty()) return;
+		Map<String, List<Link>> linksByRel = new LinkedHashMap<>();
+		for (Link link : links)
+			linksByRel.computeIfAbsent(link.getRel(), rel -> new ArrayList<>()).add(link);
+
+		generator.writeObjectFieldStart(LINKS);
+		for (Map.Entry<String, List<Link>> entry : linksByRel.entrySet()) {
+			generator.writeFieldName(entry.getKey());
+			if (entry.getValue().size() == 1) {
+				writeLink(generator, entry.getValue().get(0));
+			} else {
+				generator.writeStartArray();
+				for (Link link : entry.getValue())
+					writeLink(generator, link);
+				generator.writeEndArray();
+			}
+		}
+		generator.writeEndObject();
+	}
+
+	private static void writeHref(JsonGenerator generator, String rel, String href) throws IOException {
+		generator.writeObjectFieldStart(rel);
+		generator.writeStringField("href", href);
+		generator.writeEndObject();
+	}
+
+	private static void writeLink(JsonGenerator generator, Link link) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("href", link.getHref());
+		if (link.isTemplated())
+			generator.writeBooleanField("templated", true);
+		generator.writeEndObject();
+	}
+
+	private ThingShape getShape(boolean sparse) {
+		if (sparse) {
+			if (sparseShape == null)
+				sparseShape = new ThingShape(objectMapper, SparseThingResource.class);
+			return sparseShape;
+		}
+		if (defaultShape == null)
+			defaultShape = new ThingShape(objectMapper, ThingResource.class);
+		return defaultShape;
+	}
+
+	/**
+	 * Properties of a thing resource class, as the object mapper serializes them.
+	 */
+	private static class ThingShape {
+
+		private final List<String> properties;
+		private final boolean writeNulls;
+
+		ThingShape(ObjectMapper objectMapper, Class<?> resourceClass) {
+			SerializationConfig config = objectMapper.getSerializationConfig();
+			BeanDescription description = config.introspect(objectMapper.constructType(resourceClass));
+			List<String> result = new ArrayList<>();
+			for (BeanPropertyDefinition property : description.findProperties()) {
+				if (!property.couldSerialize()) continue;
+				if (!property.getName().equals(LINKS) && ThingField.forProperty(property.getName()) == null)
+					throw new IllegalStateException("Unexpected thing property: " + property.getName());
+				result.add(property.getName());
+			}
+			properties = Collections.unmodifiableList(result);
+			Include inclusion = description.findPropertyInclusion(config.getDefaultPropertyInclusion(resourceClass)).getValueInclusion();
+			writeNulls = (inclusion == Include.ALWAYS || inclusion == Include.USE_DEFAULTS);
+		}
+	}
+}
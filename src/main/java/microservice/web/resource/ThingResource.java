@@ -22,7 +22,7 @@ import org.springframework.hateoas.Link;
 import org.springframework.hateoas.ResourceSupport;
 import org.springframework.hateoas.core.Relation;
 
-import microservice.model.ThingEntity;
+import microservice.model.ThingRow;
 
 @Relation(value = ThingResource.REL_ITEM, collectionRelation = ThingResource.REL_COL)
 public class ThingResource extends ResourceSupport {
@@ -35,11 +35,11 @@ public class ThingResource extends ResourceSupport {
     public final Instant createdOn;
     public final String createdBy;
 
-    public ThingResource(ThingEntity entity, Link... links) {
-    	id = entity.getId();
-    	name = entity.getName();
-    	createdOn = entity.getCreatedOn();
-    	createdBy = entity.getCreatedBy();
+    public ThingResource(ThingRow row, Link... links) {
+    	id = row.getId();
+    	name = row.getName();
+    	createdOn = row.getCreatedOn();
+    	createdBy = row.getCreatedBy();
     	add(links);
     }
 }
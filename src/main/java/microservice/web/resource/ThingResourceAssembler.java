@@ -16,19 +16,34 @@
 
 package microservice.web.resource;
 
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.PagedResources.PageMetadata;
 import org.springframework.hateoas.ResourceSupport;
-import org.springframework.hateoas.mvc.ControllerLinkBuilder;
 import org.springframework.hateoas.mvc.ResourceAssemblerSupport;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import microservice.model.ThingEntity;
+import microservice.model.ThingField;
+import microservice.model.ThingRow;
 import microservice.web.ThingController;
 
+/**
+ * Builds thing resources with links derived from the base URI of the things collection, which is resolved once per
+ * request (and cached per base URI); every resource only appends its id to it.
+ */
 @Component
-public class ThingResourceAssembler extends ResourceAssemblerSupport<ThingEntity, ResourceSupport> {
+public class ThingResourceAssembler extends ResourceAssemblerSupport<ThingRow, ResourceSupport> {
+
+	private static final String LINKS_ATTRIBUTE = ThingResourceAssembler.class.getName() + ".links";
+
+	private final ConcurrentMap<String, ThingLinks> linksByBaseUri = new ConcurrentHashMap<>();
 
 	public ThingResourceAssembler() {
 		super(ThingController.class, ResourceSupport.class);
@@ -38,13 +53,113 @@ public class ThingResourceAssembler extends ResourceAssemblerSupport<ThingEntity
 	 * @see org.springframework.hateoas.ResourceAssembler#toResource(java.lang.Object)
 	 */
 	@Override
+	public ResourceSupport toResource(ThingRow row) {
+		return toResource(row, null, true);
+	}
+
+	/**
+	 * @param fields Fields of the thing requested, for a {@link SparseThingResource}; null for the default
+	 * representation, a {@link ThingResource}
+	 * @param withLinks Whether to include the links of the thing
+	 */
+	public ResourceSupport toResource(ThingRow row, Set<ThingField> fields, boolean withLinks) {
+		return buildResource(row, fields, withLinks, (row == null || !withLinks) ? null : getLinks());
+	}
+
+	/**
+	 * Same as {@link #toResource(ThingRow, Set, boolean)}, with links under the given base URI instead of that of
+	 * the current request, for work done off the container thread.
+	 *
+	 * @param baseUri URI of the things collection, see {@link LinkUtils#getBaseUri(Class)}
+	 */
+	public ResourceSupport toResource(ThingRow row, Set<ThingField> fields, boolean withLinks, String baseUri) {
+		return buildResource(row, fields, withLinks, (row == null || !withLinks) ? null : getLinks(baseUri));
+	}
+
 	public ResourceSupport toResource(ThingEntity entity) {
-		if (entity == null) return null;
-		ControllerLinkBuilder selfLinkBuilder = linkTo(methodOn(ThingController.class).find(entity.getId()));
-		ControllerLinkBuilder allLinkBuilder = linkTo(methodOn(ThingController.class).findMatching(null, null));
-		return new ThingResource(entity,
-				selfLinkBuilder.withSelfRel(),
-				selfLinkBuilder.withRel(ThingResource.REL_ITEM),
-				allLinkBuilder.withRel(ThingResource.REL_COL));
+		return (entity == null) ? null : toResource(ThingRow.of(entity));
+	}
+
+	/**
+	 * @param baseUri URI of the things collection, see {@link LinkUtils#getBaseUri(Class)}
+	 */
+	public ResourceSupport toResource(ThingEntity entity, String baseUri) {
+		return (entity == null) ? null : toResource(ThingRow.of(entity), null, true, baseUri);
+	}
+
+	/**
+	 * Collection of the given things, to be streamed by {@link ThingPageHttpMessageConverter} with the same links
+	 * {@link #toResource(ThingRow, Set, boolean)} would give them.
+	 *
+	 * @param fields Fields of the things requested; null for the default representation
+	 * @param withLinks Whether to include the links of each thing
+	 * @param links Links of the collection
+	 * @param metadata paging information, or null for a slice
+	 */
+	public ThingPage toPage(List<ThingRow> rows, Set<ThingField> fields, boolean withLinks, List<Link> links, PageMetadata metadata) {
+		return buildPage(rows, fields, withLinks, links, metadata, getLinks());
+	}
+
+	/**
+	 * Same as {@link #toPage(List, Set, boolean, List, PageMetadata)}, with links under the given base URI instead
+	 * of that of the current request, for work done off the container thread.
+	 *
+	 * @param baseUri URI of the things collection, see {@link LinkUtils#getBaseUri(Class)}
+	 */
+	public ThingPage toPage(List<ThingRow> rows, Set<ThingField> fields, boolean withLinks, List<Link> links, PageMetadata metadata, String baseUri) {
+		return buildPage(rows, fields, withLinks, links, metadata, getLinks(baseUri));
+	}
+
+	//============
+	// Utilities
+	//============
+	private static ResourceSupport buildResource(ThingRow row, Set<ThingField> fields, boolean withLinks, ThingLinks thingLinks) {
+		if (row == null) return null;
+		Link[] links = new Link[0];
+		if (withLinks) {
+			String itemHref = thingLinks.itemHrefPrefix + row.getId();
+			links = new Link[] { new Link(itemHref), new Link(itemHref, ThingResource.REL_ITEM), thingLinks.collectionLink };
+		}
+		return (fields == null) ? new ThingResource(row, links) : new SparseThingResource(row, fields, links);
+	}
+
+	private static ThingPage buildPage(List<ThingRow> rows, Set<ThingField> fields, boolean withLinks, List<Link> links, PageMetadata metadata, ThingLinks thingLinks) {
+		return new ThingPage(rows, fields, withLinks, thingLinks.itemHrefPrefix, thingLinks.collectionLink, links, metadata);
+	}
+
+	private ThingLinks getLinks() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		ThingLinks result = (attributes == null) ? null : (ThingLinks) attributes.getAttribute(LINKS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+		if (result != null)
+			return result;
+
+		result = getLinks(LinkUtils.getBaseUri(ThingController.class));
+		if (attributes != null)
+			attributes.setAttribute(LINKS_ATTRIBUTE, result, RequestAttributes.SCOPE_REQUEST);
+		return result;
+	}
+
+	private ThingLinks getLinks(String baseUri) {
+		ThingLinks result = linksByBaseUri.get(baseUri);
+		if (result == null) {
+			result = new ThingLinks(baseUri);
+			if (linksByBaseUri.size() < LinkUtils.MAX_CACHED_BASE_URIS)
+				linksByBaseUri.putIfAbsent(baseUri, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Links shared by all the things under a base URI.
+	 */
+	private static class ThingLinks {
+
+		private final String itemHrefPrefix;
+		private final Link collectionLink;
+
+		ThingLinks(String baseUri) {
+			itemHrefPrefix = baseUri + "/";
+			collectionLink = new Link(baseUri, ThingResource.REL_COL);
+		}
 	}
 }
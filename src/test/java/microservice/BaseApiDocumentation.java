@@ -27,6 +27,7 @@ import static org.springframework.restdocs.operation.preprocess.Preprocessors.pr
 import static org.springframework.restdocs.operation.preprocess.Preprocessors.prettyPrint;
 import static org.springframework.restdocs.payload.PayloadDocumentation.fieldWithPath;
 import static org.springframework.restdocs.payload.PayloadDocumentation.responseFields;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -54,10 +55,12 @@ import org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders;
 import org.springframework.restdocs.mockmvc.RestDocumentationResultHandler;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.ResultHandler;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.StringUtils;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.context.WebApplicationContext;
 
@@ -70,7 +73,7 @@ import com.jayway.jsonpath.JsonPath;
  * @since Jul 13, 2017
  */
 @SpringBootTest
-@TestPropertySource(properties = { "application.add-test-data = false" })
+@TestPropertySource(properties = { "microservice.add-test-data = false" })
 public class BaseApiDocumentation {
 
 	@Value("${server.contextPath}")
@@ -149,14 +152,13 @@ public class BaseApiDocumentation {
 	// DOCUMENTATION UTILITIES
 	//===========================
 	public ResultActions testOkAndDocumentRequest(MockHttpServletRequestBuilder requestBuilder, ResultHandler docHandler) throws Exception {
-		return this.mockMvc.perform(requestBuilder)
+		return perform(requestBuilder)
 			.andExpect(status().isOk())
 			.andDo(docHandler);
 	}
 
 	public ResultActions submitPayload(HttpMethod method, String uri, Map<String, Object> payload) throws Exception, JsonProcessingException {
-		return this.mockMvc
-				.perform(
+		return perform(
 						request(method, getRelativePath(uri))
 							.contentType(MediaType.APPLICATION_JSON_VALUE)
 							.content(this.objectMapper.writeValueAsString(payload))
@@ -164,12 +166,22 @@ public class BaseApiDocumentation {
 				.andExpect(status().isOk());
 	}
 
+	/**
+	 * Performs a request and, if its handling went asynchronous, dispatches it again once done, so the actions
+	 * returned are those of the final response.
+	 */
+	public ResultActions perform(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+		ResultActions resultActions = this.mockMvc.perform(requestBuilder);
+		MvcResult result = resultActions.andReturn();
+		return result.getRequest().isAsyncStarted() ? this.mockMvc.perform(asyncDispatch(result)) : resultActions;
+	}
+
 	//===========================
 	// ASSERTION UTILITIES
 	//===========================
 	public ResultActions assertExpectedResponse(String uri, Map<String, Object> expectedResponse) throws Exception {
 		String relPath = getRelativePath(uri);
-		ResultActions resultActions = this.mockMvc.perform(get(relPath))
+		ResultActions resultActions = perform(get(relPath))
 				.andExpect(status().isOk())
 				.andExpect(jsonPath("_links.self.href", is(uri)));
 
@@ -212,7 +224,8 @@ public class BaseApiDocumentation {
 	}
 
 	public String getRelativePath(String uri) {
-		return uri.contains(contextPath) ? uri.split(contextPath, 2)[1] : uri;
+		String basePath = getBasePath();
+		return uri.contains(basePath) ? uri.split(basePath, 2)[1] : uri;
 	}
 
 	public Map<String, Object> createPayloadModel(String[] keys, Object[] values) {
@@ -248,6 +261,14 @@ public class BaseApiDocumentation {
     }
 
     public MockHttpServletRequestBuilder request(HttpMethod method, String relPath) {
-    	return RestDocumentationRequestBuilders.request(method, contextPath + relPath).contextPath(contextPath);
+    	String basePath = getBasePath();
+    	return RestDocumentationRequestBuilders.request(method, basePath + relPath).contextPath(basePath);
+    }
+
+    /**
+     * Context path without its trailing slash, as servlet requests report it.
+     */
+    private String getBasePath() {
+    	return StringUtils.trimTrailingCharacter(contextPath, '/');
     }
 }
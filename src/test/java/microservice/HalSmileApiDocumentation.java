@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package microservice;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import microservice.model.ThingEntity;
+import microservice.repository.ThingRepository;
+import microservice.web.resource.HalSmileHttpMessageConverter;
+
+/**
+ * Resources negotiated as Smile have the same HAL structure, and values, as negotiated as HAL+JSON.
+ */
+@RunWith(SpringRunner.class)
+public class HalSmileApiDocumentation extends BaseApiDocumentation {
+
+	private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+	@Autowired
+	private ThingRepository repo;
+
+	@Before
+	@Override
+	public void setup() {
+		super.setup();
+		wipeRepositories(repo);
+		repo.save(new ThingEntity("a", "John Doe"));
+		repo.save(new ThingEntity("b", "John Doe"));
+	}
+
+	@Test
+	public void writesPagesOfThingsWithTheirHalStructure() throws Exception {
+		assertSameAsJson(get("/things?size=1"));
+		assertSameAsJson(get("/things?size=1&cursor="));
+		assertSameAsJson(get("/things?fields=id,name&links=none"));
+	}
+
+	@Test
+	public void writesThingsWithTheirHalStructure() throws Exception {
+		long id = repo.findByName("a").getId();
+
+		assertSameAsJson(get("/things/" + id));
+		assertSameAsJson(get("/things/" + id + "?fields=id,createdOn"));
+	}
+
+	@Test
+	public void readsThingsFromSmile() throws Exception {
+		ObjectNode thing = JSON_MAPPER.createObjectNode().put("name", "c");
+		JsonNode created = readSmile(perform(post("/things")
+				.contentType(HalSmileHttpMessageConverter.SMILE)
+				.content(SMILE_MAPPER.writeValueAsBytes(thing))
+				.accept(HalSmileHttpMessageConverter.SMILE))
+			.andExpect(status().isOk())
+			.andReturn().getResponse().getContentAsByteArray());
+
+		assertThat(created.path("name").asText(), is("c"));
+		assertThat(created.path("_links").path("self").path("href").isTextual(), is(true));
+		assertThat(repo.findByName("c").getName(), is("c"));
+	}
+
+	//===========================
+	// ASSERTION UTILITIES
+	//===========================
+	private void assertSameAsJson(MockHttpServletRequestBuilder request) throws Exception {
+		byte[] smile = perform(request.accept(HalSmileHttpMessageConverter.SMILE))
+			.andExpect(status().isOk())
+			.andExpect(content().contentTypeCompatibleWith(HalSmileHttpMessageConverter.SMILE))
+			.andReturn().getResponse().getContentAsByteArray();
+		String json = perform(request.accept(MediaTypes.HAL_JSON))
+			.andExpect(status().isOk())
+			.andReturn().getResponse().getContentAsString();
+
+		assertThat(readSmile(smile), is(JSON_MAPPER.readTree(json)));
+	}
+
+	private static JsonNode readSmile(byte[] smile) throws Exception {
+		return SMILE_MAPPER.readTree(smile);
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package microservice;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latencies of repeated runs of a task, and the bytes they allocate, for benchmarks.
+ */
+public class Measurements {
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private final String name;
+	private final Histogram histogram = new Histogram(TimeUnit.MINUTES.toNanos(1), 3);
+	private long allocatedBytes;
+
+	/**
+	 * Measurements to be recorded one by one with {@link #record(long)}, from a single thread.
+	 */
+	public Measurements(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Runs the task a number of times to warm up, then measures the latency of each of its next runs, and the bytes
+	 * allocated by the current thread along all of them.
+	 */
+	public static Measurements measure(String name, int warmups, int iterations, Runnable task) {
+		for (int i = 0; i < warmups; i++)
+			task.run();
+
+		Measurements result = new Measurements(name);
+		long allocatedBefore = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			task.run();
+			result.record(System.nanoTime() - start);
+		}
+		result.allocatedBytes = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+		return result;
+	}
+
+	public void record(long nanos) {
+		histogram.recordValue(Math.min(nanos, histogram.getHighestTrackableValue()));
+	}
+
+	public double getMeanMicros() {
+		return histogram.getMean() / 1000;
+	}
+
+	/**
+	 * @return Mean bytes allocated per run, when measured by {@link #measure}
+	 */
+	public long getAllocatedBytesPerRun() {
+		return (histogram.getTotalCount() == 0) ? 0 : allocatedBytes / histogram.getTotalCount();
+	}
+
+	public double getPercentileMicros(double percentile) {
+		return histogram.getValueAtPercentile(percentile) / 1000.0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%-40s n=%-6d mean=%10.1f us  p50=%10.1f us  p99=%10.1f us  alloc=%10d B",
+				name, histogram.getTotalCount(), getMeanMicros(), getPercentileMicros(50), getPercentileMicros(99), getAllocatedBytesPerRun());
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import microservice.metrics.LatencyMetrics;
+import microservice.model.ThingEntity;
+import microservice.repository.QueryPlanCacheCounter;
+import microservice.repository.ThingRepository;
+
+/**
+ * The latency metrics are served in the Prometheus text exposition format (version 0.0.4).
+ */
+@RunWith(SpringRunner.class)
+public class StatsApiDocumentation extends BaseApiDocumentation {
+
+	private static final Pattern HELP = Pattern.compile("# HELP [a-zA-Z_:][a-zA-Z0-9_:]* .+");
+	private static final Pattern TYPE = Pattern.compile("# TYPE ([a-zA-Z_:][a-zA-Z0-9_:]*) summary");
+	private static final Pattern SAMPLE = Pattern.compile(
+			"([a-zA-Z_:][a-zA-Z0-9_:]*)\\{([a-zA-Z_][a-zA-Z0-9_]*=\"(?:[^\"\\\\\\n]|\\\\[\\\\\"n])*\"(?:,[a-zA-Z_][a-zA-Z0-9_]*=\"(?:[^\"\\\\\\n]|\\\\[\\\\\"n])*\")*)\\} (NaN|[0-9.E-]+)");
+
+	@Autowired
+	private ThingRepository repo;
+
+	@Autowired
+	private QueryPlanCacheCounter planCache;
+
+	@Before
+	@Override
+	public void setup() {
+		super.setup();
+		wipeRepositories(repo);
+		repo.save(new ThingEntity("a", "John Doe"));
+	}
+
+	@Test
+	public void servesLatenciesInThePrometheusFormat() throws Exception {
+		perform(get("/things")).andExpect(status().isOk());
+
+		String body = perform(get("/stats/prometheus"))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.parseMediaType("text/plain;version=0.0.4")))
+				.andReturn().getResponse().getContentAsString();
+
+		List<String> lines = Arrays.asList(body.split("\n"));
+		String typed = null;
+		for (String line : lines) {
+			Matcher type = TYPE.matcher(line);
+			Matcher sample = SAMPLE.matcher(line);
+			if (type.matches()) {
+				typed = type.group(1);
+			} else if (sample.matches()) {
+				String metric = sample.group(1).replaceFirst("_(sum|count)$", "");
+				assertThat("Sample of the metric last typed: " + line, metric, is(typed));
+			} else {
+				assertTrue("Line in the Prometheus format: " + line, HELP.matcher(line).matches());
+			}
+		}
+
+		String requests = LatencyMetrics.REQUESTS;
+		assertThat(lines, hasItem("# TYPE " + requests + " summary"));
+		assertThat(lines, hasItem("# TYPE " + LatencyMetrics.INVOCATIONS + " summary"));
+		for (String quantile : Arrays.asList("0.5", "0.9", "0.99", "0.999"))
+			assertTrue("Quantile " + quantile, lines.stream().anyMatch(line -> line.startsWith(
+					requests + "{handler=\"ThingController.findMatching\",quantile=\"" + quantile + "\"} ")));
+		assertThat(sample(lines, requests + "_count{handler=\"ThingController.findMatching\"}"), greaterThanOrEqualTo(1.0));
+		assertThat(sample(lines, requests + "_sum{handler=\"ThingController.findMatching\"}"), greaterThanOrEqualTo(0.0));
+
+		String median = requests + "{handler=\"ThingController.findMatching\",quantile=\"0.5\"}";
+		List<String> rescraped = Arrays.asList(perform(get("/stats/prometheus")).andReturn().getResponse().getContentAsString().split("\n"));
+		assertThat("quantiles kept across scrapes", sample(rescraped, median), is(sample(lines, median)));
+	}
+
+	@Test
+	public void countsQueryPlanCacheHits() throws Exception {
+		perform(get("/things")).andExpect(status().isOk());
+		long hits = planCache.getHits();
+
+		perform(get("/things")).andExpect(status().isOk());
+
+		assertThat("plans of the second identical request found in the cache", planCache.getHits(), greaterThan(hits));
+		perform(get("/stats/queries"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.plans.counted", is(true)))
+				.andExpect(jsonPath("$.statisticsEnabled", is(true)));
+	}
+
+	//============
+	// Utilities
+	//============
+	private static double sample(List<String> lines, String series) {
+		return lines.stream()
+				.filter(line -> line.startsWith(series + " "))
+				.mapToDouble(line -> Double.parseDouble(line.substring(series.length() + 1)))
+				.findFirst()
+				.orElseThrow(() -> new AssertionError("No sample of " + series));
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package microservice;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.hateoas.ResourceSupport;
+import org.springframework.hateoas.Resources;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import microservice.model.ThingCursor;
+import microservice.model.ThingEntity;
+import microservice.model.ThingField;
+import microservice.model.ThingQueryParameters;
+import microservice.model.ThingRow;
+import microservice.repository.ThingRepository;
+import microservice.web.ThingController;
+import microservice.web.resource.LinkUtils;
+import microservice.web.resource.ThingResourceAssembler;
+
+/**
+ * Collections of things, streamed by {@code ThingPageHttpMessageConverter}, are the same bytes Spring Data REST
+ * writes for the equivalent {@link PagedResources} (or {@link Resources}, for slices).
+ */
+@RunWith(SpringRunner.class)
+public class ThingPagesApiDocumentation extends BaseApiDocumentation {
+
+	@Autowired
+	private ThingRepository repo;
+
+	@Autowired
+	private ThingResourceAssembler entityAssembler;
+
+	@Autowired
+	private PagedResourcesAssembler<ThingRow> pagedAssembler;
+
+	@Autowired
+	@Qualifier("halObjectMapper")
+	private ObjectMapper halObjectMapper;
+
+	@Before
+	@Override
+	public void setup() {
+		super.setup();
+		wipeRepositories(repo);
+		createThings("b", "d", "a", "e", "c");
+	}
+
+	@After
+	public void resetRequest() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	public void writesPagesAsPagedResources() throws Exception {
+		MvcResult result = perform(get("/things?sort=name,desc&size=2&page=1").accept(MediaTypes.HAL_JSON))
+			.andExpect(status().isOk())
+			.andReturn();
+
+		Page<ThingRow> page = repo.findMatching(new ThingQueryParameters(), new PageRequest(1, 2, new Sort(Sort.Direction.DESC, "name")));
+		assertThat(result.getResponse().getContentAsString(), is(writePagedResources(result, page)));
+	}
+
+	@Test
+	public void writesEmptyPagesAsPagedResources() throws Exception {
+		MvcResult result = perform(get("/things?createdBy=nobody").accept(MediaTypes.HAL_JSON))
+			.andExpect(status().isOk())
+			.andReturn();
+
+		ThingQueryParameters qParams = new ThingQueryParameters();
+		qParams.setCreatedBy("nobody");
+		Page<ThingRow> page = repo.findMatching(qParams, new PageRequest(0, 20));
+		assertThat(page.getTotalElements(), is(0L));
+		assertThat(result.getResponse().getContentAsString(), is(writePagedResources(result, page)));
+	}
+
+	@Test
+	public void writesPagesOfFieldsRequestedAsPagedResources() throws Exception {
+		MvcResult result = perform(get("/things?fields=id,name&links=none&sort=createdOn").accept(MediaTypes.HAL_JSON))
+			.andExpect(status().isOk())
+			.andReturn();
+
+		Set<ThingField> fields = EnumSet.of(ThingField.ID, ThingField.NAME);
+		Page<ThingRow> page = repo.findMatching(new ThingQueryParameters(), fields, new PageRequest(0, 20, new Sort("createdOn")));
+		bindRequest(result);
+		PagedResources<ResourceSupport> resources = pagedAssembler.toResource(page, row -> entityAssembler.toResource(row, fields, false));
+		resources.add(ThingController.TEMPLATED_LINK_COL.get());
+		assertThat(result.getResponse().getContentAsString(), is(halObjectMapper.writeValueAsString(resources)));
+	}
+
+	@Test
+	public void writesSlicesAsResources() throws Exception {
+		MvcResult result = perform(get("/things?sort=name&size=2&cursor=").accept(MediaTypes.HAL_JSON))
+			.andExpect(status().isOk())
+			.andReturn();
+
+		ThingCursor cursor = ThingCursor.first(new Sort("name"));
+		Slice<ThingRow> slice = repo.findMatching(new ThingQueryParameters(), cursor, 2);
+		bindRequest(result);
+		LinkedMultiValueMap<String, String> uriParams = LinkUtils.getUriParamsExcluding((MockHttpServletRequest) result.getRequest(), "page");
+		List<Link> links = new ArrayList<>();
+		links.add(LinkUtils.createLink(linkTo(ThingController.class), uriParams).withSelfRel());
+		uriParams.set(ThingController.PARAM_CURSOR, cursor.next(slice.getContent().get(1)).encode());
+		links.add(LinkUtils.createLink(linkTo(ThingController.class), uriParams).withRel(Link.REL_NEXT));
+		links.add(ThingController.TEMPLATED_LINK_COL.get());
+		Resources<ResourceSupport> resources = new Resources<>(toResources(slice.getContent()), links);
+
+		assertThat(result.getResponse().getContentAsString(), is(halObjectMapper.writeValueAsString(resources)));
+	}
+
+	//===========================
+	// DATA UTILITIES
+	//===========================
+	private void createThings(String... names) {
+		Stream.of(names).forEach(name -> repo.save(new ThingEntity(name, "John Doe")));
+	}
+
+	/**
+	 * Writes the page as Spring Data REST would, with the links the assemblers give it for the request performed.
+	 */
+	private String writePagedResources(MvcResult result, Page<ThingRow> page) throws Exception {
+		bindRequest(result);
+		PagedResources<ResourceSupport> resources = pagedAssembler.toResource(page, entityAssembler);
+		resources.add(ThingController.TEMPLATED_LINK_COL.get());
+		return halObjectMapper.writeValueAsString(resources);
+	}
+
+	private List<ResourceSupport> toResources(List<ThingRow> rows) {
+		return rows.stream().map(entityAssembler::toResource).collect(Collectors.toList());
+	}
+
+	private static void bindRequest(MvcResult result) {
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(result.getRequest()));
+	}
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+
+import microservice.model.ThingEntity;
+import microservice.repository.ThingRepository;
+import microservice.web.ThingController;
+
+/**
+ * Reads of the things collection.
+ */
+@RunWith(SpringRunner.class)
+public class ThingsApiDocumentation extends BaseApiDocumentation {
+
+	@Autowired
+	private ThingRepository repo;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Before
+	@Override
+	public void setup() {
+		super.setup();
+		wipeRepositories(repo);
+	}
+
+	@Test
+	public void sortsAndPagesInTheDatabase() throws Exception {
+		createThings("b", "d", "a", "e", "c");
+
+		perform(get("/things?sort=name,desc&size=2&page=1"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("_embedded.things[*].name", contains("c", "b")))
+			.andExpect(jsonPath("page.totalElements", is(5)))
+			.andExpect(jsonPath("page.totalPages", is(3)));
+	}
+
+	@Test
+	public void rejectsSortingByUnknownProperties() throws Exception {
+		createThings("a");
+
+		perform(get("/things?sort=bogus"))
+			.andExpect(status().isBadRequest());
+		perform(get("/things?sort=name&sort=modifiedOn,desc"))
+			.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void walksWithCursorsThroughTiesOnTheSortValue() throws Exception {
+		createThingsBy("John Doe", "a", "b");
+		createThingsBy("Jane Doe", "c", "d", "e");
+		createThingsBy("John Doe", "f");
+
+		assertThat(walk("/things?sort=createdBy&size=2&cursor="), contains("c", "d", "e", "a", "b", "f"));
+		assertThat(walk("/things?sort=createdBy,desc&size=2&cursor="), contains("f", "b", "a", "e", "d", "c"));
+	}
+
+	@Test
+	public void walksWithCursorsInDescendingOrder() throws Exception {
+		createThings("b", "d", "a", "e", "c");
+
+		assertThat(walk("/things?sort=name,desc&size=2&cursor="), contains("e", "d", "c", "b", "a"));
+		assertThat(walk("/things?sort=id,desc&size=3&cursor="), contains("c", "e", "a", "d", "b"));
+	}
+
+	@Test
+	public void endsWalksWithoutANextLink() throws Exception {
+		createThings("a", "b");
+
+		perform(get("/things?size=2&cursor="))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("_embedded.things[*].name", contains("a", "b")))
+			.andExpect(jsonPath("_links.next").doesNotExist())
+			.andExpect(jsonPath("page").doesNotExist());
+	}
+
+	@Test
+	public void rejectsMalformedCursors() throws Exception {
+		perform(get("/things?cursor=bogus"))
+			.andExpect(status().isBadRequest());
+		perform(get("/things?sort=modifiedOn&cursor="))
+			.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void rejectsCursorsOfSeveralOrders() throws Exception {
+		perform(get("/things?sort=createdBy&sort=name,desc&cursor="))
+			.andExpect(status().isBadRequest());
+		perform(get("/things?sort=createdBy,name&cursor="))
+			.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void keepsTheDefaultRepresentationWithoutFields() throws Exception {
+		long id = createThings("a").get(0).getId();
+
+		perform(get("/things"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("_embedded.things[0].id").doesNotExist())
+			.andExpect(jsonPath("_embedded.things[0].name", is("a")))
+			.andExpect(jsonPath("_embedded.things[0].createdOn").exists())
+			.andExpect(jsonPath("_embedded.things[0].createdBy", is("John Doe")))
+			.andExpect(jsonPath("_embedded.things[0]._links.self.href").exists());
+		perform(get("/things/" + id))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("id").doesNotExist())
+			.andExpect(jsonPath("name", is("a")))
+			.andExpect(jsonPath("_links.self.href").exists());
+	}
+
+	@Test
+	public void returnsOnlyTheFieldsRequested() throws Exception {
+		long id = createThings("a").get(0).getId();
+
+		perform(get("/things?fields=id,name"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("_embedded.things[0].id", is((int) id)))
+			.andExpect(jsonPath("_embedded.things[0].name", is("a")))
+			.andExpect(jsonPath("_embedded.things[0].createdOn").doesNotExist())
+			.andExpect(jsonPath("_embedded.things[0].createdBy").doesNotExist())
+			.andExpect(jsonPath("_embedded.things[0]._links.self.href").exists());
+		perform(get("/things/" + id + "?fields=createdBy"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("createdBy", is("John Doe")))
+			.andExpect(jsonPath("id").doesNotExist())
+			.andExpect(jsonPath("name").doesNotExist());
+	}
+
+	@Test
+	public void leavesOutTheLinksOfEachThing() throws Exception {
+		long id = createThings("a").get(0).getId();
+
+		perform(get("/things?links=none"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("_embedded.things[0].name", is("a")))
+			.andExpect(jsonPath("_embedded.things[0]._links").doesNotExist())
+			.andExpect(jsonPath("_links.self.href").exists());
+		perform(get("/things/" + id + "?links=none"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("name", is("a")))
+			.andExpect(jsonPath("_links").doesNotExist());
+	}
+
+	@Test
+	public void rejectsUnknownFields() throws Exception {
+		long id = createThings("a").get(0).getId();
+
+		perform(get("/things?fields=name,bogus"))
+			.andExpect(status().isBadRequest());
+		perform(get("/things/" + id + "?fields=bogus"))
+			.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void sortsByFieldsNotRequested() throws Exception {
+		createThingsBy("John Doe", "a", "b");
+		createThingsBy("Jane Doe", "c");
+		createThingsBy("Jim Doe", "d");
+
+		perform(get("/things?fields=name&sort=createdBy,desc&sort=name,desc"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("_embedded.things[*].name", contains("b", "a", "d", "c")))
+			.andExpect(jsonPath("_embedded.things[*].createdBy").isEmpty());
+		assertThat(walk("/things?fields=name&sort=createdBy&size=1&cursor="), contains("c", "d", "a", "b"));
+	}
+
+	@Test
+	public void answersConditionalReadsOfAnUnchangedThingWith304() throws Exception {
+		ThingEntity thing = createThings("a").get(0);
+		String uri = "/things/" + thing.getId();
+
+		MockHttpServletResponse response = perform(get(uri))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.LAST_MODIFIED, notNullValue()))
+			.andReturn().getResponse();
+		String eTag = response.getHeader(HttpHeaders.ETAG);
+		assertThat(eTag, startsWith("\""));
+
+		perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, eTag))
+			.andExpect(status().isNotModified())
+			.andExpect(header().string(HttpHeaders.ETAG, eTag))
+			.andExpect(content().string(""));
+		perform(get(uri).header(HttpHeaders.IF_MODIFIED_SINCE, response.getHeader(HttpHeaders.LAST_MODIFIED)))
+			.andExpect(status().isNotModified());
+
+		thing.setName("b");
+		repo.save(thing);
+		perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, eTag))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.ETAG, not(eTag)))
+			.andExpect(jsonPath("name", is("b")));
+	}
+
+	@Test
+	public void answersConditionalReadsOfAnUnchangedPageWith304() throws Exception {
+		createThings("a", "b");
+		String uri = "/things?fields=name&size=1";
+
+		String eTag = perform(get(uri))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("_links.next.href").exists())
+			.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + eTag))
+			.andExpect(status().isNotModified())
+			.andExpect(header().string(HttpHeaders.ETAG, eTag));
+		perform(get("/things?fields=name&size=2").header(HttpHeaders.IF_NONE_MATCH, eTag))
+			.andExpect(status().isOk());
+
+		createThings("c");
+		perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, eTag))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("page.totalElements", is(3)));
+	}
+
+	@Test
+	public void readsPagesWithoutCountingTheThingsAgain() throws Exception {
+		createThings("a", "b", "c");
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+		long queries = statistics.getQueryExecutionCount();
+		perform(get("/things?size=2"))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.ETAG, notNullValue()))
+			.andExpect(jsonPath("page.totalElements", is(3)));
+		assertThat("watermark and page", statistics.getQueryExecutionCount() - queries, is(2L));
+
+		queries = statistics.getQueryExecutionCount();
+		perform(get("/things?size=2&page=5"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("_embedded").doesNotExist())
+			.andExpect(jsonPath("page.totalElements", is(3)));
+		assertThat("watermark only", statistics.getQueryExecutionCount() - queries, is(1L));
+	}
+
+	@Test
+	public void exportsTheMatchingThingsAsNdjson() throws Exception {
+		createThingsBy("John Doe", "a", "b");
+		createThingsBy("Jane Doe", "c");
+
+		// Written by the export itself, as it goes, rather than by the dispatch of its result
+		MvcResult result = mockMvc.perform(get("/things/export?createdBy=John Doe")).andReturn();
+		result.getAsyncResult();
+		MockHttpServletResponse response = result.getResponse();
+
+		assertThat(response.getStatus(), is(200));
+		assertThat(response.getContentType(), startsWith(ThingController.MEDIA_TYPE_NDJSON));
+		List<String> names = Stream.of(response.getContentAsString().split("\n"))
+				.map(line -> JsonPath.parse(line).<String>read("name"))
+				.collect(Collectors.toList());
+		assertThat(names, contains("a", "b"));
+	}
+
+	//===========================
+	// DATA UTILITIES
+	//===========================
+	protected List<ThingEntity> createThings(String... names) {
+		return createThingsBy("John Doe", names);
+	}
+
+	protected List<ThingEntity> createThingsBy(String user, String... names) {
+		return Stream.of(names)
+				.map(name -> repo.save(new ThingEntity(name, user)))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Names of the things of all the slices, following the {@code next} links from the one given.
+	 */
+	protected List<String> walk(String relPath) throws Exception {
+		List<String> result = new ArrayList<>();
+		String next = relPath;
+		while (next != null) {
+			DocumentContext slice = JsonPath.parse(perform(get(next))
+					.andExpect(status().isOk())
+					.andReturn().getResponse().getContentAsString());
+			List<String> names = slice.read("$._embedded.things[*].name");
+			result.addAll(names);
+			List<String> nextHrefs = slice.read("$._links[?(@.next)].next.href");
+			next = nextHrefs.isEmpty() ? null : getRelativePath(nextHrefs.get(0));
+		}
+		return result;
+	}
+}
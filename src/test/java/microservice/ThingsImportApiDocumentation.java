@@ -0,0 +1,141 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import microservice.model.ThingEntity;
+import microservice.repository.ThingRepository;
+import microservice.web.ThingController;
+
+/**
+ * Bulk imports of things.
+ */
+@RunWith(SpringRunner.class)
+public class ThingsImportApiDocumentation extends BaseApiDocumentation {
+
+	@Autowired
+	private ThingRepository repo;
+
+	@Autowired
+	private ConfigProperties config;
+
+	private int importChunkSize;
+
+	@Before
+	@Override
+	public void setup() {
+		super.setup();
+		wipeRepositories(repo);
+		importChunkSize = config.getImportChunkSize();
+	}
+
+	@After
+	public void restoreConfig() {
+		config.setImportChunkSize(importChunkSize);
+	}
+
+	@Test
+	public void importsNdjsonRows() throws Exception {
+		perform(post("/things/import")
+				.contentType(ThingController.MEDIA_TYPE_NDJSON)
+				.content("{\"name\":\"a\"}\n{\"name\":\"b\"}\n"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("rows", is(2)))
+			.andExpect(jsonPath("imported", is(2)))
+			.andExpect(jsonPath("failed", is(0)));
+
+		assertThat(names(), containsInAnyOrder("a", "b"));
+	}
+
+	@Test
+	public void importsCsvRows() throws Exception {
+		perform(post("/things/import")
+				.contentType(ThingController.MEDIA_TYPE_CSV)
+				.content("id,name\n1,a\n2,\"b, c\"\n"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("imported", is(2)));
+
+		assertThat(names(), containsInAnyOrder("a", "b, c"));
+	}
+
+	@Test
+	public void reportsFailedRowsWithoutAbortingTheImport() throws Exception {
+		perform(post("/things/import")
+				.contentType(ThingController.MEDIA_TYPE_NDJSON)
+				.content("{\"name\":\"a\"}\n{\"name\":\n{\"name\":\" \"}\n{}\n{\"name\":\"b\"}\n"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("rows", is(5)))
+			.andExpect(jsonPath("imported", is(2)))
+			.andExpect(jsonPath("failed", is(3)))
+			.andExpect(jsonPath("failures[0].row", is(2)))
+			.andExpect(jsonPath("failures[0].reason", startsWith("Malformed JSON")))
+			.andExpect(jsonPath("failures[1].row", is(3)))
+			.andExpect(jsonPath("failures[2].row", is(4)));
+
+		assertThat(names(), containsInAnyOrder("a", "b"));
+	}
+
+	@Test
+	public void retriesRowByRowTheChunksWhichFail() throws Exception {
+		createThings("x");
+		config.setImportChunkSize(2);
+
+		perform(post("/things/import")
+				.contentType(ThingController.MEDIA_TYPE_CSV)
+				.content("name\na\nb\nc\nx\nd\nb\n"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("rows", is(6)))
+			.andExpect(jsonPath("imported", is(4)))
+			.andExpect(jsonPath("failed", is(2)))
+			.andExpect(jsonPath("failures[0].row", is(4)))
+			.andExpect(jsonPath("failures[0].value", is("x")))
+			.andExpect(jsonPath("failures[1].row", is(6)))
+			.andExpect(jsonPath("failures[1].value", is("b")));
+
+		assertThat(names(), containsInAnyOrder("x", "a", "b", "c", "d"));
+	}
+
+	//===========================
+	// DATA UTILITIES
+	//===========================
+	private void createThings(String... names) {
+		for (String name : names)
+			repo.save(new ThingEntity(name, "John Doe"));
+	}
+
+	private List<String> names() {
+		return StreamSupport.stream(repo.findAll().spliterator(), false)
+				.map(ThingEntity::getName)
+				.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+
+/**
+ * Throughput of the service under many concurrent slow clients, with requests on the Tomcat pool of platform
+ * threads or each on a virtual thread of its own ({@code microservice.virtual-threads}). Every client creates a
+ * thing, uploading its body in pieces with pauses in between: the container thread reading it is blocked meanwhile,
+ * so the platform pool caps how many clients are served at once, whereas virtual threads do not, as long as they are
+ * not pinned to their carrier while blocked (as in the blocking reads of Tomcat 8.5, which wait on the carrier).
+ * <p>
+ * Requires JDK 21 or later. The number of clients ({@code -Dbenchmark.clients}, 10000 by default) and the time each
+ * takes to upload its body ({@code -Dbenchmark.upload-millis}) can be set; both the clients and the service run in
+ * this JVM, so the limit of open files must be above twice the number of clients. See the {@code benchmark} task of
+ * the build to run it on another JDK.
+ */
+@Category(Benchmark.class)
+public class ThroughputBenchmark {
+
+	private static final int CLIENTS = Integer.getInteger("benchmark.clients", 10000);
+	private static final int UPLOAD_MILLIS = Integer.getInteger("benchmark.upload-millis", 1000);
+	private static final int UPLOAD_PIECES = 4;
+	private static final long CLIENT_STACK_SIZE = 256 * 1024;
+
+	@Test
+	public void measureSlowClients() throws Exception {
+		assumeTrue("Virtual threads require JDK 21 or later", VirtualThreads.isSupported());
+
+		run(false);
+		run(true);
+	}
+
+	private static void run(boolean virtualThreads) throws Exception {
+		// As arguments, to override application.properties
+		EmbeddedWebApplicationContext context = (EmbeddedWebApplicationContext) new SpringApplicationBuilder(Application.class).run(
+				"--server.port=0",
+				"--server.tomcat.max-connections=" + (CLIENTS + 100),
+				"--microservice.add-test-data=false",
+				"--microservice.virtual-threads=" + virtualThreads,
+				"--microservice.trace-pinned-threads=none", // Neither short nor full: pinning is not traced
+				// Neither shed nor rejected: what is measured is how many clients are served at once
+				"--microservice.jpa-executor-queue-capacity=" + CLIENTS,
+				"--microservice.concurrency-limit-cheap=" + CLIENTS,
+				"--microservice.concurrency-limit-min=" + CLIENTS,
+				"--microservice.concurrency-limit-max=" + CLIENTS);
+		try {
+			int port = context.getEmbeddedServletContainer().getPort();
+			String path = context.getEnvironment().getProperty("server.contextPath") + "things";
+
+			// Clients on platform threads of their own: as virtual threads, they would wait for the carriers of the service
+			long[] latencies = new long[CLIENTS];
+			int[] statuses = new int[CLIENTS];
+			List<Thread> clients = new ArrayList<>(CLIENTS);
+			long startedOn = System.nanoTime();
+			for (int i = 0; i < CLIENTS; i++) {
+				int client = i;
+				Thread thread = new Thread(null, () -> {
+					long start = System.nanoTime();
+					statuses[client] = createSlowly(port, path, "thing-" + client);
+					latencies[client] = System.nanoTime() - start;
+				}, "client-" + client, CLIENT_STACK_SIZE);
+				thread.start();
+				clients.add(thread);
+			}
+			for (Thread client : clients)
+				client.join();
+			long elapsedNanos = System.nanoTime() - startedOn;
+
+			Measurements measurements = new Measurements(virtualThreads ? "virtual threads" : "platform threads");
+			Map<Integer, Integer> countsByStatus = new TreeMap<>();
+			for (int i = 0; i < CLIENTS; i++) {
+				measurements.record(latencies[i]);
+				countsByStatus.merge(statuses[i], 1, Integer::sum);
+			}
+			System.out.println(measurements + String.format("  (%d clients, %.0f requests/s, statuses %s)",
+					CLIENTS, CLIENTS / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1)), countsByStatus));
+		} finally {
+			context.close();
+		}
+	}
+
+	/**
+	 * @return Status of the response, or -1 if the connection failed
+	 */
+	private static int createSlowly(int port, String path, String name) {
+		byte[] body = ("{\"name\":\"" + name + "\"}").getBytes(StandardCharsets.UTF_8);
+		String head = "POST " + path + " HTTP/1.1\r\n"
+				+ "Host: localhost:" + port + "\r\n"
+				+ "Content-Type: application/json\r\n"
+				+ "Accept: application/hal+json\r\n"
+				+ "Content-Length: " + body.length + "\r\n"
+				+ "Connection: close\r\n\r\n";
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress("localhost", port), 60000);
+			socket.setSoTimeout(600000);
+			OutputStream out = socket.getOutputStream();
+			out.write(head.getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			int pieceLength = (body.length + UPLOAD_PIECES - 1) / UPLOAD_PIECES;
+			for (int offset = 0; offset < body.length; offset += pieceLength) {
+				Thread.sleep(UPLOAD_MILLIS / UPLOAD_PIECES);
+				out.write(body, offset, Math.min(pieceLength, body.length - offset));
+				out.flush();
+			}
+			return readStatus(socket.getInputStream());
+		} catch (IOException e) {
+			return -1;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads the whole response, to the end of the connection, and returns its status (-1 if there is none).
+	 */
+	private static int readStatus(InputStream in) throws IOException {
+		StringBuilder statusLine = new StringBuilder();
+		int c;
+		while ((c = in.read()) != -1 && c != '\n')
+			statusLine.append((char) c);
+		byte[] buffer = new byte[4096];
+		while (in.read(buffer) != -1) {
+			// Consumed
+		}
+		String[] parts = statusLine.toString().split(" ");
+		return (parts.length < 2) ? -1 : Integer.parseInt(parts[1]);
+	}
+}
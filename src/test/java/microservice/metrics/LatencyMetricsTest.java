@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.metrics;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Quantiles cover a window of recent calls, kept across scrapes and expired as time passes.
+ */
+public class LatencyMetricsTest {
+
+	private static final long WINDOW_MILLIS = LatencyMetrics.SLICE_MILLIS * LatencyMetrics.WINDOW_SLICES;
+
+	@Test
+	public void keepsTheCallsOfTheWindowAcrossScrapes() {
+		LatencyMetrics.Timer timer = new LatencyMetrics.Timer("handler=test");
+		long now = WINDOW_MILLIS * 1000;
+		timer.record(TimeUnit.MILLISECONDS.toNanos(5));
+
+		assertThat(timer.getWindowHistogram(now).getTotalCount(), is(1L));
+		timer.record(TimeUnit.MILLISECONDS.toNanos(7));
+		assertThat(timer.getWindowHistogram(now + LatencyMetrics.SLICE_MILLIS).getTotalCount(), is(2L));
+		assertThat(timer.getWindowHistogram(now + WINDOW_MILLIS).getTotalCount(), is(1L));
+	}
+
+	@Test
+	public void expiresTheCallsOutOfTheWindow() {
+		LatencyMetrics.Timer timer = new LatencyMetrics.Timer("handler=test");
+		long now = WINDOW_MILLIS * 1000;
+		timer.record(TimeUnit.MILLISECONDS.toNanos(5));
+
+		assertThat(timer.getWindowHistogram(now).getTotalCount(), is(1L));
+		assertThat(timer.getWindowHistogram(now + WINDOW_MILLIS).getTotalCount(), is(0L));
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.metrics;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.aopalliance.aop.Advice;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import microservice.model.ThingEntity;
+import microservice.repository.ThingRepository;
+import microservice.service.AppService;
+
+/**
+ * The timing advice comes first in the proxies of the repository and the service, outside their transactions, so
+ * their latencies include the commit.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@TestPropertySource(properties = { "microservice.add-test-data = false" })
+public class MethodLatencyPostProcessorTest {
+
+	@Autowired
+	private ThingRepository repo;
+
+	@Autowired
+	private AppService appService;
+
+	@Autowired
+	private LatencyMetrics metrics;
+
+	@Test
+	public void timesTheRepositoryOutsideItsTransactions() {
+		assertTimedOutsideTransactions(repo);
+	}
+
+	@Test
+	public void timesTheServiceOutsideItsTransactions() {
+		assertTimedOutsideTransactions(appService);
+	}
+
+	@Test
+	public void recordsInvocationsOfTheRepository() {
+		repo.save(new ThingEntity("timed", "John Doe"));
+		repo.deleteAll();
+
+		StringBuilder out = new StringBuilder();
+		metrics.writePrometheus(out);
+		assertThat(out.toString(), containsString(
+				LatencyMetrics.INVOCATIONS + "_count{method=\"" + ThingRepository.class.getSimpleName() + ".save\"} "));
+	}
+
+	//============
+	// Utilities
+	//============
+	private static void assertTimedOutsideTransactions(Object bean) {
+		assertThat(bean, is(instanceOf(Advised.class)));
+		List<Advice> advices = Arrays.stream(((Advised) bean).getAdvisors())
+				.map(Advisor::getAdvice)
+				.collect(Collectors.toList());
+
+		assertThat(advices.get(0), is(instanceOf(MethodLatencyPostProcessor.TimingInterceptor.class)));
+		assertThat("Index of the transaction advice", indexOf(advices, TransactionInterceptor.class), is(greaterThan(0)));
+	}
+
+	private static int indexOf(List<Advice> advices, Class<?> adviceClass) {
+		for (int i = 0; i < advices.size(); i++)
+			if (adviceClass.isInstance(advices.get(i)))
+				return i;
+		return -1;
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.model;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+
+public class ThingCursorTest {
+
+	private static final ThingRow ROW = new ThingRow(42, "a|b|c", Instant.parse("2017-07-13T10:15:30.123Z"), "John Doe");
+
+	@Test
+	public void sortsByIdWhenNoSortIsRequested() {
+		ThingCursor cursor = ThingCursor.first(null);
+
+		assertThat(cursor.isFirst(), is(true));
+		assertThat(cursor.isSortedById(), is(true));
+		assertThat(cursor.isAscending(), is(true));
+	}
+
+	@Test
+	public void decodesWhatItEncodesForEveryPropertyAndDirection() {
+		for (String property : new String[] { "id", "name", "createdOn", "createdBy" }) {
+			for (Direction direction : Direction.values()) {
+				ThingCursor next = ThingCursor.first(new Sort(direction, property)).next(ROW);
+				ThingCursor decoded = ThingCursor.decode(next.encode());
+
+				assertThat(decoded.getProperty(), is(property));
+				assertThat(decoded.isAscending(), is(direction.isAscending()));
+				assertThat(decoded.getLastId(), is(42L));
+				assertThat(decoded.getLastValue(), is(next.getLastValue()));
+			}
+		}
+	}
+
+	@Test
+	public void keepsTheSeparatorWithinValues() {
+		ThingCursor decoded = ThingCursor.decode(ThingCursor.first(new Sort("name")).next(ROW).encode());
+
+		assertThat(decoded.getLastValue(), is("a|b|c"));
+	}
+
+	@Test
+	public void keepsValuesWhichReadAsNull() {
+		ThingRow row = new ThingRow(7, "null", Instant.EPOCH, "John Doe");
+		ThingCursor decoded = ThingCursor.decode(ThingCursor.first(new Sort("name")).next(row).encode());
+
+		assertThat(decoded.getLastValue(), is("null"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNullSortValues() {
+		ThingCursor.first(new Sort("createdBy")).next(new ThingRow(7, "a", Instant.EPOCH, null));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void hasNoTextualFormAtTheBeginning() {
+		ThingCursor.first(null).encode();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsSortingByUnknownProperties() {
+		ThingCursor.first(new Sort("modifiedOn"));
+	}
+
+	@Test
+	public void rejectsMalformedTokens() {
+		String[] tokens = {
+				"not base64!",
+				encode("name|ASC|42"),
+				encode("modifiedOn|ASC|42|2017-07-13T10:15:30Z"),
+				encode("name|SIDEWAYS|42|a"),
+				encode("name|ASC|forty-two|a"),
+				encode("id|ASC|42|forty-two"),
+				encode("createdOn|ASC|42|yesterday")
+		};
+		for (String token : tokens) {
+			try {
+				ThingCursor.decode(token);
+				throw new AssertionError("Token accepted: " + token);
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+		}
+	}
+
+	private static String encode(String value) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package microservice.repository;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import microservice.Benchmark;
+import microservice.ConfigProperties;
+import microservice.Measurements;
+import microservice.model.ThingEntity;
+import microservice.model.ThingQueryParameters;
+import microservice.repository.ThingRepositoryNamesTest.NamesStrategy;
+
+/**
+ * Latency of the reads of a page request (watermark, page and count) filtered by many names, for each way of
+ * filtering by name.
+ */
+@Category(Benchmark.class)
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@TestPropertySource(properties = { "microservice.add-test-data = false" })
+public class ThingNamesFilterBenchmark {
+
+	private static final int THINGS = 100_000;
+	private static final int[] NAMES = { 10, 100, 1_000, 10_000, 100_000 };
+
+	@Autowired
+	private ThingRepository repo;
+
+	@Autowired
+	private ConfigProperties config;
+
+	private int namesInListMaxSize;
+	private int namesStagingThreshold;
+
+	@Before
+	public void setup() {
+		namesInListMaxSize = config.getNamesInListMaxSize();
+		namesStagingThreshold = config.getNamesStagingThreshold();
+		repo.deleteAll();
+		for (int start = 0; start < THINGS; start += 1000)
+			repo.insertAll(IntStream.range(start, start + 1000)
+					.mapToObj(idx -> new ThingEntity("thing-" + idx, "user-" + (idx % 100)))
+					.collect(Collectors.toList()));
+	}
+
+	@After
+	public void teardown() {
+		config.setNamesInListMaxSize(namesInListMaxSize);
+		config.setNamesStagingThreshold(namesStagingThreshold);
+		repo.deleteAll();
+	}
+
+	@Test
+	public void measureNamesStrategies() {
+		for (int count : NAMES) {
+			ThingQueryParameters qParams = new ThingQueryParameters();
+			qParams.setNames(names(count));
+			int warmups = (count < 10_000) ? 3 : 1;
+			int iterations = Math.max(5, 20_000 / count);
+			for (NamesStrategy strategy : NamesStrategy.values()) {
+				strategy.apply(config, count);
+				System.out.println(Measurements.measure(count + " names, " + strategy, warmups, iterations, () -> repo.withNamesStaged(qParams, () -> {
+					repo.findWatermark(qParams);
+					return repo.findMatching(qParams, new PageRequest(10, 20, new Sort("name")));
+				})));
+			}
+		}
+	}
+
+	/**
+	 * Names of things spread over the whole table, half of them missing.
+	 */
+	private static Set<String> names(int count) {
+		List<String> names = IntStream.range(0, count)
+				.mapToObj(idx -> (idx % 2 == 0) ? "thing-" + (idx * (THINGS / count)) : "missing-" + idx)
+				.collect(Collectors.toList());
+		return new LinkedHashSet<>(names);
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package microservice.repository;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import microservice.ConfigProperties;
+import microservice.model.ThingCursor;
+import microservice.model.ThingEntity;
+import microservice.model.ThingNameFilter;
+import microservice.model.ThingQueryParameters;
+import microservice.model.ThingRow;
+import microservice.model.ThingWatermark;
+
+/**
+ * Filtering things by name gives the same results whether the names are listed, fanned out or staged.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@TestPropertySource(properties = { "microservice.add-test-data = false" })
+public class ThingRepositoryNamesTest {
+
+	/** Ways of filtering by name, with the configuration which makes names of the given number use them */
+	public enum NamesStrategy {
+		IN_LIST, FAN_OUT, STAGING;
+
+		public void apply(ConfigProperties config, int names) {
+			config.setNamesInListMaxSize(this == IN_LIST ? names : Math.max(1, names / 8));
+			config.setNamesStagingThreshold(this == STAGING ? 0 : names);
+		}
+	}
+
+	@Autowired
+	private ThingRepository repo;
+
+	@Autowired
+	private ConfigProperties config;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private int namesInListMaxSize;
+	private int namesStagingThreshold;
+
+	@Before
+	public void setup() {
+		namesInListMaxSize = config.getNamesInListMaxSize();
+		namesStagingThreshold = config.getNamesStagingThreshold();
+		repo.deleteAll();
+		createThings(300);
+	}
+
+	@After
+	public void restoreConfig() {
+		config.setNamesInListMaxSize(namesInListMaxSize);
+		config.setNamesStagingThreshold(namesStagingThreshold);
+	}
+
+	@Test
+	public void returnsTheSameResultsWhateverTheStrategy() {
+		ThingQueryParameters qParams = queryNames(200);
+
+		List<Object> expected = null;
+		for (NamesStrategy strategy : NamesStrategy.values()) {
+			strategy.apply(config, qParams.getNames().size());
+			List<Object> results = readAll(qParams);
+			if (expected == null)
+				expected = results;
+			else
+				assertThat(strategy.name(), results, is(expected));
+		}
+	}
+
+	@Test
+	public void stagesTheNamesOnceForAllTheReadsOfARequest() {
+		ThingQueryParameters qParams = queryNames(200);
+		NamesStrategy.STAGING.apply(config, qParams.getNames().size());
+
+		long staged = countStagedNames();
+		repo.findWatermark(qParams);
+		repo.findMatching(qParams, new PageRequest(0, 10));
+		assertThat(countStagedNames() - staged, is(2L * qParams.getNames().size()));
+
+		staged = countStagedNames();
+		repo.withNamesStaged(qParams, () -> {
+			repo.findWatermark(qParams);
+			return repo.findMatching(qParams, new PageRequest(0, 10));
+		});
+		assertThat(countStagedNames() - staged, is((long) qParams.getNames().size()));
+	}
+
+	@Test
+	public void stagesTheNamesInTheTransactionOfTheCaller() {
+		ThingQueryParameters qParams = queryNames(200);
+		NamesStrategy.STAGING.apply(config, qParams.getNames().size());
+
+		// A read in a transaction of its own would hold a second connection, while the caller's is held
+		long transactions = getStatistics().getTransactionCount();
+		long staged = countStagedNames();
+		Page<ThingRow> page = new TransactionTemplate(transactionManager).execute(status -> repo.findMatching(qParams, new PageRequest(0, 10)));
+
+		assertThat(page.getTotalElements(), is(100L));
+		assertThat(countStagedNames() - staged, is((long) qParams.getNames().size()));
+		assertThat(getStatistics().getTransactionCount() - transactions, is(1L));
+	}
+
+	//============
+	// Utilities
+	//============
+	/**
+	 * Watermark, pages sorted in several ways with their totals, and the first slices of a walk with cursors.
+	 */
+	private List<Object> readAll(ThingQueryParameters qParams) {
+		List<Object> result = new ArrayList<>();
+		ThingWatermark watermark = repo.findWatermark(qParams);
+		result.add(Arrays.asList(watermark.getCount(), watermark.getVersionSum(), watermark.getLastModified()));
+		for (Sort sort : Arrays.asList(new Sort(Direction.DESC, "name"), new Sort("createdBy", "name"), new Sort("id"))) {
+			Page<ThingRow> page = repo.findMatching(qParams, new PageRequest(2, 25, sort));
+			result.add(page.getTotalElements());
+			result.add(toNames(page.getContent()));
+		}
+		ThingCursor cursor = ThingCursor.first(new Sort(Direction.DESC, "createdBy"));
+		for (int i = 0; i < 3; i++) {
+			Slice<ThingRow> slice = repo.findMatching(qParams, cursor, 40);
+			result.add(toNames(slice.getContent()));
+			cursor = cursor.next(slice.getContent().get(slice.getContent().size() - 1));
+		}
+		return result;
+	}
+
+	/**
+	 * Every other thing, followed by as many names of no thing.
+	 */
+	private static ThingQueryParameters queryNames(int count) {
+		Set<String> names = new LinkedHashSet<>();
+		IntStream.range(0, count / 2).forEach(idx -> names.add(name(idx * 2)));
+		IntStream.range(0, count / 2).forEach(idx -> names.add("missing-" + idx));
+		ThingQueryParameters result = new ThingQueryParameters();
+		result.setNames(names);
+		return result;
+	}
+
+	private void createThings(int count) {
+		repo.insertAll(IntStream.range(0, count)
+				.mapToObj(idx -> new ThingEntity(name(idx), "user-" + (idx % 7)))
+				.collect(Collectors.toList()));
+	}
+
+	private static String name(int idx) {
+		return String.format("thing-%05d", idx);
+	}
+
+	private static List<String> toNames(List<ThingRow> rows) {
+		return rows.stream().map(ThingRow::getName).collect(Collectors.toList());
+	}
+
+	private long countStagedNames() {
+		return getStatistics().getEntityStatistics(ThingNameFilter.class.getName()).getInsertCount();
+	}
+
+	private Statistics getStatistics() {
+		return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+}
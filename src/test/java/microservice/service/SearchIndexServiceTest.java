@@ -0,0 +1,165 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.service;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import microservice.ConfigProperties;
+import microservice.model.ThingEntity;
+import microservice.repository.LuceneRepositoryCustom;
+import microservice.repository.ThingRepository;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@TestPropertySource(properties = { "microservice.add-test-data = false" })
+public class SearchIndexServiceTest {
+
+	@Autowired
+	private SearchIndexServiceImpl service;
+
+	@Autowired
+	private LuceneRepositoryCustom<ThingEntity> searchRepo;
+
+	@Autowired
+	private ThingRepository repo;
+
+	@Autowired
+	private IndexingQueue indexingQueue;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private ConfigProperties config;
+
+	@Before
+	public void setup() throws InterruptedException {
+		awaitReindex();
+		repo.deleteAll();
+		indexingQueue.flush();
+		searchRepo.purgeAll(ThingEntity.class);
+	}
+
+	@Test
+	public void findsTheDocumentsOfThingsNoLongerInTheDatabase() throws InterruptedException {
+		List<ThingEntity> things = createThings("a", "b", "c");
+		long orphanId = things.get(1).getId();
+		jdbcTemplate.update("delete from THING where id = ?", orphanId);
+
+		List<Serializable> orphans = new ArrayList<>();
+		long count = searchRepo.scrollOrphanIds(ThingEntity.class, 2, orphans::addAll);
+
+		assertThat(count, is(1L));
+		assertThat(orphans, contains((Serializable) orphanId));
+	}
+
+	@Test
+	public void purgesOrphanDocumentsAfterRebuildingInPlace() throws InterruptedException {
+		List<ThingEntity> things = createThings("a", "b", "c");
+		jdbcTemplate.update("delete from THING where id = ?", things.get(0).getId());
+
+		service.synchronizeIndex();
+		ReindexProgress progress = awaitReindex();
+
+		assertThat(progress.getState(), is(ReindexProgress.State.COMPLETED));
+		assertThat(searchRepo.countIndexed(ThingEntity.class), is(2L));
+		List<Serializable> orphans = new ArrayList<>();
+		searchRepo.scrollOrphanIds(ThingEntity.class, 10, orphans::addAll);
+		assertThat(orphans, is(empty()));
+	}
+
+	@Test
+	public void holdsChangesBackWhileTheQueueIsPaused() throws InterruptedException {
+		indexingQueue.pause();
+		try {
+			repo.save(new ThingEntity("a", "John Doe"));
+			Thread.sleep(200);
+
+			assertThat(indexingQueue.getBacklog(), is(1));
+			assertThat(searchRepo.countIndexed(ThingEntity.class), is(0L));
+		} finally {
+			indexingQueue.resume();
+		}
+		indexingQueue.flush();
+
+		assertThat(searchRepo.countIndexed(ThingEntity.class), is(1L));
+	}
+
+	@Test
+	public void rebuildsTheIndexInsteadOfQueueingChangesWhenTheQueueIsFull() throws InterruptedException {
+		int capacity = config.getIndexingQueueCapacity();
+		long offerTimeout = config.getIndexingOfferTimeoutMillis();
+		config.setIndexingQueueCapacity(1);
+		config.setIndexingOfferTimeoutMillis(10);
+		ReindexProgress previous = service.getReindexProgress();
+		try {
+			indexingQueue.pause();
+			try {
+				repo.save(new ThingEntity("a", "John Doe"));
+				repo.save(new ThingEntity("b", "John Doe"));
+
+				assertThat(indexingQueue.isRebuildRequired(), is(true));
+				assertThat(searchRepo.countIndexed(ThingEntity.class), is(0L));
+			} finally {
+				indexingQueue.resume();
+			}
+			while (service.getReindexProgress() == previous)
+				Thread.sleep(10);
+			ReindexProgress progress = awaitReindex();
+
+			assertThat(progress.getState(), is(ReindexProgress.State.COMPLETED));
+			assertThat(searchRepo.countIndexed(ThingEntity.class), is(2L));
+		} finally {
+			config.setIndexingQueueCapacity(capacity);
+			config.setIndexingOfferTimeoutMillis(offerTimeout);
+		}
+	}
+
+	//============
+	// Utilities
+	//============
+	private List<ThingEntity> createThings(String... names) throws InterruptedException {
+		List<ThingEntity> result = new ArrayList<>();
+		for (String name : names)
+			result.add(repo.save(new ThingEntity(name, "John Doe")));
+		indexingQueue.flush();
+		return result;
+	}
+
+	private ReindexProgress awaitReindex() throws InterruptedException {
+		ReindexProgress progress = service.getReindexProgress();
+		while (progress != null && !progress.isDone())
+			Thread.sleep(10);
+		return progress;
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+	private final SingleFlight<String> singleFlight = new SingleFlight<>("test");
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@After
+	public void teardown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void joinsTheCallInFlight() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+		Object result = new Object();
+		Supplier<Object> call = () -> {
+			calls.incrementAndGet();
+			await(release);
+			return result;
+		};
+
+		Future<Object> first = executor.submit(() -> singleFlight.execute("key", call));
+		awaitInFlight(1);
+		Future<Object> second = executor.submit(() -> singleFlight.execute("key", call));
+		awaitCollapsed(1);
+		release.countDown();
+
+		assertThat(first.get(10, TimeUnit.SECONDS), is(sameInstance(result)));
+		assertThat(second.get(10, TimeUnit.SECONDS), is(sameInstance(result)));
+		assertThat(calls.get(), is(1));
+		assertThat(singleFlight.getExecuted(), is(1L));
+	}
+
+	@Test
+	public void sharesTheFailureOfTheCallInFlight() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		IllegalStateException failure = new IllegalStateException("failed");
+		Supplier<Object> call = () -> {
+			await(release);
+			throw failure;
+		};
+
+		Future<Object> first = executor.submit(() -> singleFlight.execute("key", call));
+		awaitInFlight(1);
+		Future<Object> second = executor.submit(() -> singleFlight.execute("key", call));
+		awaitCollapsed(1);
+		release.countDown();
+
+		for (Future<Object> caller : Arrays.asList(first, second)) {
+			try {
+				caller.get(10, TimeUnit.SECONDS);
+				fail("Expected the failure of the call");
+			} catch (ExecutionException e) {
+				assertThat(e.getCause(), is(sameInstance(failure)));
+			}
+		}
+	}
+
+	@Test
+	public void forgetsCallsOnceCompleted() {
+		assertThat(singleFlight.execute("key", () -> "first"), is("first"));
+		try {
+			singleFlight.execute("key", () -> {
+				throw new IllegalStateException();
+			});
+			fail("Expected the failure of the call");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		assertThat(singleFlight.getInFlight(), is(0));
+
+		assertThat(singleFlight.execute("key", () -> "third"), is("third"));
+		assertThat(singleFlight.getExecuted(), is(3L));
+		assertThat(singleFlight.getCollapsed(), is(0L));
+	}
+
+	@Test
+	public void runsCallsOfOtherKeys() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		Future<Object> first = executor.submit(() -> singleFlight.execute("a", () -> {
+			await(release);
+			return "a";
+		}));
+		awaitInFlight(1);
+
+		assertThat(singleFlight.execute("b", () -> "b"), is("b"));
+		release.countDown();
+		assertThat(first.get(10, TimeUnit.SECONDS), is("a"));
+		assertThat(singleFlight.getCollapsed(), is(0L));
+	}
+
+	//============
+	// Utilities
+	//============
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void awaitInFlight(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (singleFlight.getInFlight() < count && System.currentTimeMillis() < deadline)
+			Thread.sleep(1);
+		assertThat(singleFlight.getInFlight(), is(count));
+	}
+
+	private void awaitCollapsed(long count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (singleFlight.getCollapsed() < count && System.currentTimeMillis() < deadline)
+			Thread.sleep(1);
+		assertThat(singleFlight.getCollapsed(), is(count));
+	}
+}
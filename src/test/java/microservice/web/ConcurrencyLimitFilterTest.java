@@ -0,0 +1,132 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class ConcurrencyLimitFilterTest {
+
+	private static final long RTT_MILLIS = 20;
+
+	private AdaptiveConcurrencyLimit cheapLimit;
+	private AdaptiveConcurrencyLimit expensiveLimit;
+	private AdaptiveConcurrencyLimit streamingLimit;
+	private ConcurrencyLimitFilter filter;
+
+	@Before
+	public void setup() {
+		cheapLimit = new AdaptiveConcurrencyLimit("cheap", 10, 1, 100);
+		expensiveLimit = new AdaptiveConcurrencyLimit("expensive", 10, 1, 100);
+		streamingLimit = AdaptiveConcurrencyLimit.fixed("streaming", 1);
+		filter = new ConcurrencyLimitFilter(cheapLimit, expensiveLimit, streamingLimit,
+				new HashSet<>(Arrays.asList(
+						ConcurrencyLimitFilter.key(HttpMethod.GET, "/things"),
+						ConcurrencyLimitFilter.key(HttpMethod.POST, "/things/import"))),
+				Collections.singleton(ConcurrencyLimitFilter.key(HttpMethod.GET, "/things/export")),
+				1);
+	}
+
+	@Test
+	public void limitsRequestsByMethodAndPath() throws Exception {
+		perform("GET", "/things", HttpStatus.OK);
+		perform("POST", "/things/import", HttpStatus.OK);
+		perform("POST", "/things", HttpStatus.OK);
+		perform("GET", "/things/1", HttpStatus.OK);
+		perform("GET", "/things/export", HttpStatus.OK);
+
+		assertThat(expensiveLimit.getAccepted(), is(2L));
+		assertThat(cheapLimit.getAccepted(), is(2L));
+		assertThat(streamingLimit.getAccepted(), is(1L));
+		assertThat(expensiveLimit.getInFlight() + cheapLimit.getInFlight() + streamingLimit.getInFlight(), is(0));
+	}
+
+	@Test
+	public void samplesOnlySuccessfulRequests() throws Exception {
+		perform("GET", "/things", HttpStatus.NOT_MODIFIED);
+		perform("GET", "/things", HttpStatus.SERVICE_UNAVAILABLE);
+		assertThat(expensiveLimit.getLastRttMillis(), is(0L));
+		assertThat(expensiveLimit.getNoLoadRttMillis(), is(0L));
+
+		perform("GET", "/things", HttpStatus.OK);
+		assertThat(expensiveLimit.getLastRttMillis(), greaterThanOrEqualTo(RTT_MILLIS));
+	}
+
+	@Test
+	public void neverSamplesStreamingRequests() throws Exception {
+		perform("GET", "/things/export", HttpStatus.OK);
+
+		assertThat(streamingLimit.getLastRttMillis(), is(0L));
+		assertThat(streamingLimit.getLimit(), is(1));
+	}
+
+	@Test
+	public void shedsRequestsBeyondTheLimit() throws Exception {
+		MockHttpServletResponse[] nested = new MockHttpServletResponse[1];
+		perform("GET", "/things/export", HttpStatus.OK, () -> nested[0] = perform("GET", "/things/export", HttpStatus.OK));
+
+		assertThat(nested[0].getStatus(), is(HttpStatus.SERVICE_UNAVAILABLE.value()));
+		assertThat(nested[0].getHeader("Retry-After"), is("1"));
+		assertThat(streamingLimit.getRejected(), is(1L));
+	}
+
+	//============
+	// Utilities
+	//============
+	private MockHttpServletResponse perform(String method, String path, HttpStatus status) {
+		return perform(method, path, status, () -> {});
+	}
+
+	/**
+	 * Runs a request through the filter, answered with the given status after {@link #RTT_MILLIS} and the given
+	 * action.
+	 */
+	private MockHttpServletResponse perform(String method, String path, HttpStatus status, Runnable action) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		FilterChain chain = (req, res) -> {
+			try {
+				Thread.sleep(RTT_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			action.run();
+			((HttpServletResponse) res).setStatus(status.value());
+		};
+		try {
+			filter.doFilter(request, response, chain);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		return response;
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import microservice.ConfigProperties;
+
+public class JpaBulkheadTest {
+
+	private JpaBulkhead bulkhead;
+
+	@Before
+	public void setup() {
+		ConfigProperties config = new ConfigProperties();
+		config.setJpaExecutorThreads(1);
+		config.setJpaExecutorQueueCapacity(1);
+		config.setAsyncTimeoutMillis(1000);
+		bulkhead = new JpaBulkhead();
+		ReflectionTestUtils.setField(bulkhead, "config", config);
+		bulkhead.start();
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+	}
+
+	@After
+	public void teardown() throws InterruptedException {
+		RequestContextHolder.resetRequestAttributes();
+		bulkhead.stop();
+	}
+
+	@Test
+	public void runsWorkWithoutTheRequestOfTheCaller() throws Exception {
+		DeferredResult<RequestAttributes> result = bulkhead.submit("read", RequestContextHolder::getRequestAttributes);
+
+		assertThat(await(result), is(nullValue()));
+	}
+
+	@Test
+	public void timesOutReadsButNotWrites() {
+		assertThat(ReflectionTestUtils.getField(bulkhead.submit("read", () -> ""), "timeout"), is(1000L));
+		assertThat(ReflectionTestUtils.getField(bulkhead.submitWrite("write", () -> ""), "timeout"), is(nullValue()));
+	}
+
+	@Test
+	public void dropsResultsOfRequestsAlreadyAnswered() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch answered = new CountDownLatch(1);
+		DeferredResult<String> result = bulkhead.submitWrite("write", () -> {
+			started.countDown();
+			answered.await();
+			return "late";
+		});
+		started.await();
+		result.setErrorResult(new IllegalStateException("answered"));
+		answered.countDown();
+
+		DeferredResult<String> next = bulkhead.submit("read", () -> "next");
+		assertThat(await(next), is("next"));
+		assertThat(result.getResult() instanceof IllegalStateException, is(true));
+		assertThat(bulkhead.getStatsByEndpoint().get("write").getDropped(), is(1L));
+		assertThat(bulkhead.getStatsByEndpoint().get("write").getFailures(), is(0L));
+	}
+
+	@Test(expected = BulkheadFullException.class)
+	public void rejectsWorkBeyondTheQueue() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			bulkhead.submit("read", () -> release.await(10, TimeUnit.SECONDS));
+			bulkhead.submit("read", () -> true);
+			bulkhead.submit("read", () -> true);
+		} finally {
+			release.countDown();
+		}
+	}
+
+	//============
+	// Utilities
+	//============
+	@SuppressWarnings("unchecked")
+	private static <RESULT_T> RESULT_T await(DeferredResult<RESULT_T> result) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!result.hasResult() && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		assertThat(result.hasResult(), is(true));
+		return (RESULT_T) result.getResult();
+	}
+}
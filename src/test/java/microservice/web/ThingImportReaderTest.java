@@ -0,0 +1,127 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package microservice.web;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ThingImportReaderTest {
+
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+	@Test
+	public void readsNamesOfNdjsonLinesSkippingBlankOnes() {
+		ThingImportReader reader = ThingImportReader.ndjson(input(
+				"{\"name\":\"a\"}\n\n  \n{\"name\":\"b\",\"createdBy\":\"ignored\"}\r\n{\"name\":\"c\"}"), objectMapper);
+
+		assertThat(readAll(reader), contains("a", "b", "c"));
+	}
+
+	@Test
+	public void reportsMalformedNdjsonLinesAndGoesOn() {
+		ThingImportReader reader = ThingImportReader.ndjson(input("{\"name\":\"a\"}\n{\"name\":\n{\"name\":\"c\"}"), objectMapper);
+
+		assertThat(reader.next(), is("a"));
+		try {
+			reader.next();
+			throw new AssertionError("Malformed line accepted");
+		} catch (IllegalArgumentException e) {
+			assertThat(e.getMessage(), startsWith("Malformed JSON"));
+		}
+		assertThat(reader.next(), is("c"));
+		assertThat(reader.hasNext(), is(false));
+	}
+
+	@Test
+	public void readsNullNamesOfNdjsonLinesWithoutName() {
+		ThingImportReader reader = ThingImportReader.ndjson(input("{}\nnull"), objectMapper);
+
+		assertThat(readAll(reader), is(Arrays.asList(null, null)));
+	}
+
+	@Test
+	public void readsTheNameColumnDeclaredInTheCsvHeader() {
+		ThingImportReader reader = ThingImportReader.csv(input("id,name,createdBy\n1,a,x\n\n2, b ,y\n"));
+
+		assertThat(readAll(reader), contains("a", "b"));
+	}
+
+	@Test
+	public void readsTheFirstCsvColumnWithoutHeader() {
+		ThingImportReader reader = ThingImportReader.csv(input("a,x\nb\n"));
+
+		assertThat(readAll(reader), contains("a", "b"));
+	}
+
+	@Test
+	public void readsQuotedCsvValues() {
+		ThingImportReader reader = ThingImportReader.csv(input("name,note\n\"a, b\",x\n\"say \"\"c\"\"\",y\n\"\",z"));
+
+		assertThat(readAll(reader), contains("a, b", "say \"c\"", ""));
+	}
+
+	@Test
+	public void reportsMalformedCsvLinesAndGoesOn() {
+		ThingImportReader reader = ThingImportReader.csv(input("id,name\n1\n2,\"b\n3,c"));
+
+		List<String> errors = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		while (reader.hasNext()) {
+			try {
+				names.add(reader.next());
+			} catch (IllegalArgumentException e) {
+				errors.add(e.getMessage());
+			}
+		}
+		assertThat(names, contains("c"));
+		assertThat(errors, contains("Missing column 'name'", "Unterminated quoted value"));
+	}
+
+	@Test
+	public void readsNothingFromEmptyPayloads() {
+		assertThat(ThingImportReader.csv(input("")).hasNext(), is(false));
+		assertThat(ThingImportReader.csv(input("name\n")).hasNext(), is(false));
+		assertThat(ThingImportReader.ndjson(input("\n\n"), objectMapper).hasNext(), is(false));
+	}
+
+	//============
+	// Utilities
+	//============
+	private static InputStream input(String payload) {
+		return new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static List<String> readAll(ThingImportReader reader) {
+		List<String> result = new ArrayList<>();
+		reader.forEachRemaining(result::add);
+		return result;
+	}
+}
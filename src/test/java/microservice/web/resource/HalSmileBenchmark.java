@@ -0,0 +1,123 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package microservice.web.resource;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.PagedResources.PageMetadata;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import microservice.Benchmark;
+import microservice.Measurements;
+import microservice.model.ThingRow;
+
+/**
+ * Payload size, and time to encode and decode, of pages of things as HAL+JSON (as served, indented) and as Smile.
+ */
+@Category(Benchmark.class)
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@TestPropertySource(properties = { "microservice.add-test-data = false" })
+public class HalSmileBenchmark {
+
+	private static final int[] PAGE_SIZES = { 1, 20, 100, 1000 };
+
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+	private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+
+	@Autowired
+	private ThingPageHttpMessageConverter converter;
+
+	@Autowired
+	private ThingResourceAssembler entityAssembler;
+
+	@Before
+	public void bindRequest() {
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest("GET", "/things")));
+	}
+
+	@After
+	public void resetRequest() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	public void measureEncodings() {
+		for (int size : PAGE_SIZES) {
+			List<ThingRow> rows = LongStream.range(0, size)
+					.mapToObj(id -> new ThingRow(id, "thing-" + id, Instant.ofEpochSecond(1500000000L + id), "John Doe"))
+					.collect(Collectors.toList());
+			List<Link> links = Arrays.asList(new Link("http://localhost/things?page=3&size=" + size));
+			ThingPage page = entityAssembler.toPage(rows, null, true, links, new PageMetadata(size, 3, 100L * size));
+			int iterations = 100_000 / size;
+
+			byte[] json = write(page, MediaTypes.HAL_JSON);
+			byte[] smile = write(page, HalSmileHttpMessageConverter.SMILE);
+			System.out.printf("%d things: HAL+JSON %d bytes, Smile %d bytes (%.0f%%)%n", size, json.length, smile.length, 100.0 * smile.length / json.length);
+			assertThat(smile.length, lessThan(json.length));
+
+			System.out.println(Measurements.measure(size + " things, encode HAL+JSON", iterations / 10, iterations, () -> write(page, MediaTypes.HAL_JSON)));
+			System.out.println(Measurements.measure(size + " things, encode Smile", iterations / 10, iterations, () -> write(page, HalSmileHttpMessageConverter.SMILE)));
+			System.out.println(Measurements.measure(size + " things, decode HAL+JSON", iterations / 10, iterations, () -> read(JSON_MAPPER, json)));
+			System.out.println(Measurements.measure(size + " things, decode Smile", iterations / 10, iterations, () -> read(SMILE_MAPPER, smile)));
+		}
+	}
+
+	private byte[] write(ThingPage page, MediaType mediaType) {
+		try {
+			MockHttpOutputMessage message = new MockHttpOutputMessage();
+			converter.write(page, mediaType, message);
+			return message.getBodyAsBytes();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void read(ObjectMapper mapper, byte[] payload) {
+		try {
+			mapper.readTree(payload);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
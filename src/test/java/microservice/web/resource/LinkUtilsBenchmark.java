@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package microservice.web.resource;
+
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
+
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.hateoas.Link;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import microservice.Benchmark;
+import microservice.Measurements;
+import microservice.web.ThingController;
+
+/**
+ * Cost of the templated links added to every response, built from scratch or by {@link LinkUtils}: in a new
+ * request (base URI resolved once) and again within the same request.
+ */
+@Category(Benchmark.class)
+public class LinkUtilsBenchmark {
+
+	private static final int LINKS_PER_RUN = 1000;
+	private static final String[] PARAMS = { "names", "createdBy", "createdAfter", "createdBefore", "page", "size", "sort" };
+
+	@After
+	public void resetRequest() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	public void measureTemplatedLinks() {
+		Supplier<Link> cachingLink = LinkUtils.cachingTemplatedLink(ThingController.class, null, "things", PARAMS);
+
+		print(Measurements.measure("created", 100, 1000, () -> {
+			for (int i = 0; i < LINKS_PER_RUN; i++) {
+				startRequest();
+				LinkUtils.createTemplatedLink(linkTo(ThingController.class), "things", PARAMS);
+			}
+		}));
+		print(Measurements.measure("cached, new request", 100, 1000, () -> {
+			for (int i = 0; i < LINKS_PER_RUN; i++) {
+				startRequest();
+				cachingLink.get();
+			}
+		}));
+		print(Measurements.measure("cached, same request", 100, 1000, () -> {
+			startRequest();
+			for (int i = 0; i < LINKS_PER_RUN; i++)
+				cachingLink.get();
+		}));
+	}
+
+	private static void startRequest() {
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest("GET", "/things")));
+	}
+
+	private static void print(Measurements measurements) {
+		System.out.println(measurements + String.format("  (%.2f us per link)", measurements.getMeanMicros() / LINKS_PER_RUN));
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package microservice.web.resource;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
+
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.hateoas.Link;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import microservice.web.ThingController;
+
+public class LinkUtilsTest {
+
+	private static final String[] PARAMS = { "q", "page" };
+
+	@After
+	public void resetRequest() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	public void cachesTheSameLinkAsCreated() {
+		Supplier<Link> rootLink = LinkUtils.cachingTemplatedLink(ThingController.class, null, "things", PARAMS);
+		Supplier<Link> pathLink = LinkUtils.cachingTemplatedLink(ThingController.class, "search", "search", PARAMS);
+		startRequest("localhost");
+
+		assertThat(rootLink.get(), is(LinkUtils.createTemplatedLink(linkTo(ThingController.class), "things", PARAMS)));
+		assertThat(pathLink.get(), is(LinkUtils.createTemplatedLink(linkTo(ThingController.class).slash("search"), "search", PARAMS)));
+		assertThat(pathLink.get().getHref(), is("http://localhost/things/search{?q,page}"));
+	}
+
+	@Test
+	public void reusesLinksAcrossRequestsToTheSameBaseUri() {
+		Supplier<Link> link = LinkUtils.cachingTemplatedLink(ThingController.class, null, "things", PARAMS);
+		startRequest("localhost");
+		Link first = link.get();
+		startRequest("localhost");
+
+		assertThat(link.get(), is(sameInstance(first)));
+	}
+
+	@Test
+	public void buildsLinksPerBaseUri() {
+		Supplier<Link> link = LinkUtils.cachingTemplatedLink(ThingController.class, null, "things", PARAMS);
+		startRequest("localhost");
+		Link local = link.get();
+		startRequest("example.com");
+
+		assertThat(link.get(), is(not(local)));
+		assertThat(link.get().getHref(), is("http://example.com/things{?q,page}"));
+	}
+
+	@Test
+	public void resolvesTheBaseUriOncePerRequest() {
+		MockHttpServletRequest request = startRequest("localhost");
+		String baseUri = LinkUtils.getBaseUri(ThingController.class);
+		request.setServerName("example.com");
+
+		assertThat(LinkUtils.getBaseUri(ThingController.class), is(sameInstance(baseUri)));
+	}
+
+	private static MockHttpServletRequest startRequest(String host) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/things");
+		request.setServerName(host);
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+		return request;
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2002-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package microservice.web.resource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.hateoas.ResourceSupport;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import microservice.Benchmark;
+import microservice.Measurements;
+import microservice.model.ThingRow;
+
+/**
+ * Time and allocation of writing pages of things as HAL, streamed by {@link ThingPageHttpMessageConverter} or
+ * assembled as {@link PagedResources} and written by the HAL object mapper.
+ */
+@Category(Benchmark.class)
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@TestPropertySource(properties = { "microservice.add-test-data = false" })
+public class ThingPageBenchmark {
+
+	private static final int[] PAGE_SIZES = { 20, 100, 1000 };
+
+	@Autowired
+	private ThingPageHttpMessageConverter converter;
+
+	@Autowired
+	private ThingResourceAssembler entityAssembler;
+
+	@Autowired
+	private PagedResourcesAssembler<ThingRow> pagedAssembler;
+
+	@Autowired
+	@Qualifier("halObjectMapper")
+	private ObjectMapper halObjectMapper;
+
+	@Before
+	public void bindRequest() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/things");
+		request.addParameter("size", "20");
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+	}
+
+	@After
+	public void resetRequest() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	public void measureWritingPages() {
+		for (int size : PAGE_SIZES) {
+			List<ThingRow> rows = LongStream.range(0, size)
+					.mapToObj(id -> new ThingRow(id, "thing-" + id, Instant.ofEpochSecond(1500000000L + id), "John Doe"))
+					.collect(Collectors.toList());
+			Page<ThingRow> page = new PageImpl<>(rows, new PageRequest(3, size), 100 * size);
+			int iterations = 200_000 / size;
+
+			System.out.println(Measurements.measure(size + " things, PagedResources", iterations / 10, iterations, () -> {
+				PagedResources<ResourceSupport> resources = pagedAssembler.toResource(page, entityAssembler);
+				write(() -> halObjectMapper.writeValue(new MockHttpOutputMessage().getBody(), resources));
+			}));
+			System.out.println(Measurements.measure(size + " things, ThingPage converter", iterations / 10, iterations, () -> {
+				Page<ThingRow> shape = new PageImpl<>(Collections.<ThingRow> emptyList(), new PageRequest(3, size), page.getTotalElements());
+				PagedResources<ResourceSupport> envelope = pagedAssembler.toResource(shape, entityAssembler);
+				ThingPage thingPage = entityAssembler.toPage(rows, null, true, envelope.getLinks(), envelope.getMetadata());
+				write(() -> converter.write(thingPage, MediaTypes.HAL_JSON, new MockHttpOutputMessage()));
+			}));
+		}
+	}
+
+	private interface Write {
+		void run() throws IOException;
+	}
+
+	private static void write(Write write) {
+		try {
+			write.run();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}